@@ -0,0 +1,120 @@
+package software.plusminus.audit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogView;
+import software.plusminus.audit.repository.AuditLogBatchWriter;
+import software.plusminus.audit.repository.AuditLogRepository;
+import software.plusminus.audit.service.AuditFeedService;
+import software.plusminus.crud.CrudAction;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditFeedBenchmark {
+
+    private static final int ENTITIES = 10_000;
+    private static final int PAGE_SIZE = 100;
+    private static final List<String> TYPES = Collections.singletonList(TestEntity.class.getName());
+
+    /**
+     * Number of AuditLogs stored for every entity, all but the last one superseded.
+     */
+    @Param({"1", "10"})
+    private int historyDepth;
+
+    /**
+     * Position of the requested page in the feed, in percent.
+     */
+    @Param({"0", "50", "99"})
+    private int offsetPercent;
+
+    private ConfigurableApplicationContext context;
+    private AuditLogRepository repository;
+    private AuditFeedService feedService;
+    private int page;
+    private long lastSeen;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start();
+        repository = context.getBean(AuditLogRepository.class);
+        feedService = context.getBean(AuditFeedService.class);
+        seed();
+        page = ENTITIES * offsetPercent / 100 / PAGE_SIZE;
+        List<AuditLog<?>> previous = repository.findByEntityTypeInAndNumberGreaterThanAndCurrentTrue(
+                TYPES, 0L, PageRequest.of(Math.max(page - 1, 0), PAGE_SIZE)).getContent();
+        lastSeen = page == 0 ? 0 : previous.get(previous.size() - 1).getNumber();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<AuditLog<?>> offsetPage() {
+        return repository.findByEntityTypeInAndNumberGreaterThanAndCurrentTrue(
+                TYPES, 0L, PageRequest.of(page, PAGE_SIZE)).getContent();
+    }
+
+    @Benchmark
+    public List<AuditLog<?>> keysetSlice() {
+        return feedService.findChanges(TYPES, null, lastSeen, PAGE_SIZE).getContent();
+    }
+
+    @Benchmark
+    public List<AuditLogView> keysetViews() {
+        return feedService.findChangeViews(TYPES, null, lastSeen, PAGE_SIZE).getContent();
+    }
+
+    private void seed() {
+        AuditLogBatchWriter batchWriter = context.getBean(AuditLogBatchWriter.class);
+        TransactionTemplate transactionTemplate =
+                new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        for (int version = 0; version < historyDepth; version++) {
+            CrudAction action = version == 0 ? CrudAction.CREATE : CrudAction.UPDATE;
+            List<AuditLog<?>> auditLogs = new ArrayList<>(ENTITIES);
+            for (long id = 1; id <= ENTITIES; id++) {
+                AuditLog<?> auditLog = new AuditLog<>();
+                auditLog.setEntityType(TestEntity.class.getName());
+                auditLog.setEntityId(id);
+                auditLog.setTenant("Benchmark tenant");
+                auditLog.setTime(ZonedDateTime.now());
+                auditLog.setUsername("Benchmark");
+                auditLog.setDevice("Device " + id % 10);
+                auditLog.setAction(action);
+                auditLogs.add(auditLog);
+            }
+            transactionTemplate.execute(status -> {
+                batchWriter.write(auditLogs);
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package software.plusminus.audit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.annotation.AnnotationUtils;
+import software.plusminus.audit.annotation.Auditable;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.service.AuditLogListener;
+import software.plusminus.audit.service.AuditMetadataRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuditLogListenerBenchmark {
+
+    private final AuditLogListener listener = new AuditLogListener(null, new AuditMetadataRegistry());
+    private final Object auditable = new TestEntity();
+    private final Object notAuditable = "not auditable";
+
+    @Benchmark
+    public boolean supportsAuditable() {
+        return listener.supports(auditable);
+    }
+
+    @Benchmark
+    public boolean supportsNotAuditable() {
+        return listener.supports(notAuditable);
+    }
+
+    @Benchmark
+    public boolean findAnnotationBaseline() {
+        return AnnotationUtils.findAnnotation(auditable.getClass(), Auditable.class) != null;
+    }
+}
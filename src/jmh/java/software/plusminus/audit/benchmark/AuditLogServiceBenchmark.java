@@ -0,0 +1,83 @@
+package software.plusminus.audit.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditLogServiceBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int transactionSize;
+
+    @Param({"CREATE", "UPDATE", "PATCH", "DELETE"})
+    private CrudAction action;
+
+    @Param({"immediate", "write-behind"})
+    private String writeMode;
+
+    private ConfigurableApplicationContext context;
+    private AuditLogService service;
+    private TransactionalService transactionalService;
+    private List<TestEntity> entities;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkApplication.start("plusminus.audit.write-mode=" + writeMode);
+        service = context.getBean(AuditLogService.class);
+        transactionalService = context.getBean(TransactionalService.class);
+        entities = BenchmarkApplication.entities(transactionSize);
+        Context.init();
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        BenchmarkApplication.truncateAuditLog(context);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Context.clear();
+        context.close();
+    }
+
+    @Benchmark
+    public void log() {
+        transactionalService.inTransaction(() -> entities.forEach(entity -> service.log(entity, action)));
+    }
+
+    /**
+     * Every entity is logged twice, so the second call of each pair goes through the transaction context lookup.
+     */
+    @Benchmark
+    public void logPresentInContext() {
+        transactionalService.inTransaction(() -> {
+            entities.forEach(entity -> service.log(entity, action));
+            entities.forEach(entity -> service.log(entity, action));
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package software.plusminus.audit.benchmark;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import software.plusminus.audit.TestApplication;
+import software.plusminus.audit.fixtures.TestEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@UtilityClass
+class BenchmarkApplication {
+
+    ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(TestApplication.class)
+                .profiles("test")
+                .properties("server.port=0", "spring.jpa.show-sql=false", "logging.level.root=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Empties audit_log so that every iteration writes into a table of the same size.
+     */
+    void truncateAuditLog(ConfigurableApplicationContext context) {
+        context.getBean(JdbcTemplate.class).execute("truncate table audit_log");
+    }
+
+    List<TestEntity> entities(int count) {
+        List<TestEntity> entities = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            TestEntity entity = new TestEntity();
+            entity.setId(id);
+            entity.setMyField("Value " + id);
+            entity.setVersion(0L);
+            entity.setTenant("Benchmark tenant");
+            entities.add(entity);
+        }
+        return entities;
+    }
+}
@@ -5,4 +5,22 @@ import java.lang.annotation.RetentionPolicy;
 
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Auditable {
+
+    /**
+     * Record old and new values of changed fields in {@code AuditLog.changes}.
+     * Updates without a real change of these fields are not logged then.
+     */
+    boolean changes() default false;
+
+    /**
+     * Fields compared when {@link #changes()} is enabled. All basic fields except id, version and
+     * {@link #excludedFields()} if empty. Prefer listing the fields for entities holding secrets,
+     * so that a field added later is not recorded unnoticed.
+     */
+    String[] fields() default {};
+
+    /**
+     * Fields never recorded in {@code AuditLog.changes}, such as passwords or tokens.
+     */
+    String[] excludedFields() default {};
 }
@@ -0,0 +1,175 @@
+package software.plusminus.audit.archive;
+
+import org.springframework.stereotype.Component;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.util.AuditLogJson;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzipped NDJSON segments of archived AuditLogs, one segment per day and archived batch, in a directory per day.
+ * The index is split into {@value #INDEX_BUCKETS} bucket files by entity, each line pointing from an entity to
+ * a segment containing it, so {@link #find} reads one bucket and only the segments of the entity.
+ * A batch written again after a failed delete is found once: AuditLogs are deduplicated by number.
+ */
+@Component
+public class AuditArchive {
+
+    private static final String DATA_SUFFIX = ".ndjson.gz";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_BUCKETS = 256;
+    private static final DateTimeFormatter DAY_DIRECTORY = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+    private final Path directory;
+    private final Path indexDirectory;
+
+    public AuditArchive(AuditProperties properties) {
+        this.directory = Paths.get(properties.getArchive().getDirectory());
+        this.indexDirectory = directory.resolve("index");
+    }
+
+    public void write(List<? extends AuditLog<?>> auditLogs) {
+        Map<LocalDate, List<AuditLog<?>>> byDay = auditLogs.stream()
+                .collect(Collectors.groupingBy(
+                        auditLog -> auditLog.getTime().withZoneSameInstant(ZoneOffset.UTC).toLocalDate(),
+                        TreeMap::new, Collectors.toList()));
+        try {
+            Files.createDirectories(indexDirectory);
+            for (Map.Entry<LocalDate, List<AuditLog<?>>> day : byDay.entrySet()) {
+                writeSegment(day.getKey(), day.getValue());
+            }
+        } catch (IOException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    public List<AuditLog<?>> find(String entityType, Long entityId) {
+        String key = indexKey(entityType, entityId);
+        Path index = indexPath(key);
+        if (!Files.exists(index)) {
+            return new ArrayList<>();
+        }
+        Map<Long, AuditLog<?>> result = new TreeMap<>();
+        try {
+            Set<String> segments = new LinkedHashSet<>();
+            for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+                int separator = line.lastIndexOf('\t');
+                if (separator > 0 && line.substring(0, separator).equals(key)) {
+                    segments.add(line.substring(separator + 1));
+                }
+            }
+            for (String segment : segments) {
+                readSegment(directory.resolve(segment), entityType, entityId, result);
+            }
+        } catch (IOException e) {
+            throw new AuditException(e);
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    private void writeSegment(LocalDate day, List<AuditLog<?>> auditLogs) throws IOException {
+        String name = String.format("audit-%s-%020d-%020d", day,
+                auditLogs.get(0).getNumber(), auditLogs.get(auditLogs.size() - 1).getNumber());
+        Path dayDirectory = Files.createDirectories(directory.resolve(day.format(DAY_DIRECTORY)));
+        Map<Path, Set<String>> keysByIndex = new TreeMap<>();
+        Path data = dayDirectory.resolve(name + DATA_SUFFIX);
+        Path tempData = dayDirectory.resolve(name + DATA_SUFFIX + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tempData.toFile());
+             GZIPOutputStream gzip = new GZIPOutputStream(file);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8))) {
+            for (AuditLog<?> auditLog : auditLogs) {
+                writer.write(AuditLogJson.toJson(auditLog));
+                writer.write('\n');
+                String key = indexKey(auditLog.getEntityType(), auditLog.getEntityId());
+                keysByIndex.computeIfAbsent(indexPath(key), path -> new TreeSet<>()).add(key);
+            }
+            writer.flush();
+            gzip.finish();
+            file.getFD().sync();
+        }
+        Files.move(tempData, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        String segment = directory.relativize(data).toString().replace('\\', '/');
+        for (Map.Entry<Path, Set<String>> index : keysByIndex.entrySet()) {
+            appendIndex(index.getKey(), index.getValue().stream()
+                    .map(key -> key + '\t' + segment + '\n')
+                    .collect(Collectors.joining()));
+        }
+    }
+
+    /**
+     * Starts with a line break if a crash left the last line unterminated, so the torn line can't swallow
+     * the first appended one.
+     */
+    private static void appendIndex(Path index, String lines) throws IOException {
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            String text = lines;
+            if (size > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, size - 1);
+                if (last.get(0) != '\n') {
+                    text = '\n' + text;
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            long position = size;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        }
+    }
+
+    private void readSegment(Path data, String entityType, Long entityId, Map<Long, AuditLog<?>> result)
+            throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(data)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                AuditLog<?> auditLog = AuditLogJson.fromJson(line);
+                if (entityType.equals(auditLog.getEntityType()) && entityId.equals(auditLog.getEntityId())) {
+                    result.put(auditLog.getNumber(), auditLog);
+                }
+            }
+        }
+    }
+
+    private Path indexPath(String key) {
+        return indexDirectory.resolve(String.format("%02x", Math.floorMod(key.hashCode(), INDEX_BUCKETS))
+                + INDEX_SUFFIX);
+    }
+
+    private static String indexKey(String entityType, Long entityId) {
+        return entityType + '\t' + entityId;
+    }
+}
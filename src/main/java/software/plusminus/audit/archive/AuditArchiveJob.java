@@ -0,0 +1,88 @@
+package software.plusminus.audit.archive;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.model.AuditLog;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+/**
+ * Moves superseded AuditLogs older than {@code min-age} from the database to {@link AuditArchive}.
+ * A batch is written to the archive before it is deleted in the same transaction, so a failed delete leaves
+ * the batch in both places and it is archived again by the next run. The archive deduplicates it on read.
+ */
+@Component
+@ConditionalOnProperty(prefix = "plusminus.audit.archive", name = "enabled", havingValue = "true")
+public class AuditArchiveJob {
+
+    private static final String SUPERSEDED = "select a from AuditLog a"
+            + " where a.current = false and a.time < :cutoff order by a.number";
+    private static final String SUPERSEDED_BY_CURRENT_TABLE = "select a from AuditLog a"
+            + " where a.time < :cutoff and not exists (select c from AuditCurrent c where c.number = a.number)"
+            + " order by a.number";
+
+    private final AuditArchive archive;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditProperties properties;
+
+    public AuditArchiveJob(AuditArchive archive,
+                           EntityManager entityManager,
+                           PlatformTransactionManager transactionManager,
+                           AuditProperties properties) {
+        this.archive = archive;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    @Scheduled(fixedDelayString = "#{@auditProperties.archive.interval.toMillis()}")
+    public void archive() {
+        ZonedDateTime cutoff = ZonedDateTime.now().minus(properties.getArchive().getMinAge());
+        Integer archived;
+        do {
+            archived = transactionTemplate.execute(status -> archiveBatch(cutoff));
+        } while (archived != null && archived == properties.getArchive().getBatchSize() && pause());
+    }
+
+    @SuppressWarnings("unchecked")
+    private int archiveBatch(ZonedDateTime cutoff) {
+        List<AuditLog<?>> batch = entityManager
+                .createQuery(properties.isCurrentTable() ? SUPERSEDED_BY_CURRENT_TABLE : SUPERSEDED)
+                .setParameter("cutoff", cutoff)
+                .setMaxResults(properties.getArchive().getBatchSize())
+                .setHint(HINT_READONLY, true)
+                .getResultList();
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        archive.write(batch);
+        List<Long> numbers = batch.stream()
+                .map(AuditLog::getNumber)
+                .collect(Collectors.toList());
+        entityManager.clear();
+        entityManager.createQuery("delete from AuditLog a where a.number in :numbers")
+                .setParameter("numbers", numbers)
+                .executeUpdate();
+        return batch.size();
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.getArchive().getPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package software.plusminus.audit.async;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.model.AuditJournalPosition;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.repository.AuditLogBatchWriter;
+import software.plusminus.audit.routing.AuditTableRouting;
+import software.plusminus.audit.service.AuditCommitPublisher;
+import software.plusminus.audit.service.AuditVisibilityTracker;
+
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+
+/**
+ * Journals AuditLogs of committed transactions on the committing thread, with one fsync shared by all
+ * concurrently committing threads, and drains the journal into the database in background.
+ * The drained journal position is committed together with the drained AuditLogs, so replaying the journal
+ * after a crash never inserts an AuditLog twice.
+ * Drained AuditLogs are announced after the drain transaction commits, when they are visible with their numbers.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "plusminus.audit", name = "write-mode", havingValue = "async")
+public class AsyncAuditLogWriter {
+
+    private final AuditLogBatchWriter batchWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final AuditVisibilityTracker visibilityTracker;
+    private final AuditCommitPublisher commitPublisher;
+    private final AuditTableRouting tableRouting;
+    private final AuditProperties.Async properties;
+    private final int batchSize;
+    private final AtomicLong journaledRecords = new AtomicLong();
+    private final AtomicLong drainedRecords = new AtomicLong();
+    private final AtomicLong rejectedTransactions = new AtomicLong();
+    private volatile double drainThroughput;
+    private volatile boolean running;
+    private AuditJournal journal;
+    private Thread drainer;
+
+    public AsyncAuditLogWriter(AuditLogBatchWriter batchWriter,
+                               PlatformTransactionManager transactionManager,
+                               EntityManager entityManager,
+                               AuditProperties properties,
+                               AuditVisibilityTracker visibilityTracker,
+                               AuditCommitPublisher commitPublisher,
+                               AuditTableRouting tableRouting) {
+        this.batchWriter = batchWriter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        this.visibilityTracker = visibilityTracker;
+        this.commitPublisher = commitPublisher;
+        this.tableRouting = tableRouting;
+        this.properties = properties.getAsync();
+        this.batchSize = properties.getBatchSize();
+    }
+
+    @PostConstruct
+    public void start() {
+        journal = new AuditJournal(Paths.get(properties.getJournalDirectory()), properties.getSegmentSize());
+        recover();
+        running = true;
+        drainer = startThread("audit-journal-drainer", this::drainLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        drainer.join();
+        journal.close();
+    }
+
+    /**
+     * Called before the transaction commits: waits while the journal lag is above {@code max-journal-lag},
+     * at most {@code max-journal-lag-wait}, then fails the transaction.
+     */
+    public void awaitCapacity() {
+        checkRunning();
+        long deadline = System.nanoTime() + properties.getMaxJournalLagWait().toNanos();
+        while (journal.lag() > properties.getMaxJournalLag()) {
+            if (System.nanoTime() - deadline >= 0) {
+                rejectedTransactions.incrementAndGet();
+                throw new AuditException("Audit journal lag " + journal.lag() + " stays above "
+                        + properties.getMaxJournalLag() + " bytes for " + properties.getMaxJournalLagWait());
+            }
+            checkRunning();
+            awaitDrain();
+        }
+    }
+
+    /**
+     * Returns once the AuditLogs are forced to the journal. Called after the transaction commits, so it never
+     * waits for the drainer: backpressure is applied by {@link #awaitCapacity} before the commit.
+     */
+    public void submit(Collection<? extends AuditLog<?>> auditLogs) {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+        checkRunning();
+        long end = 0;
+        for (AuditLog<?> auditLog : auditLogs) {
+            end = journal.append(AuditRecordCodec.encode(auditLog));
+        }
+        journal.force(end);
+        journaledRecords.addAndGet(auditLogs.size());
+    }
+
+    /**
+     * AuditLogs journaled by this instance and not drained yet.
+     */
+    public long getQueueDepth() {
+        return Math.max(0, journaledRecords.get() - drainedRecords.get());
+    }
+
+    public long getJournalLag() {
+        return journal.lag();
+    }
+
+    public long getDrainedRecords() {
+        return drainedRecords.get();
+    }
+
+    /**
+     * Records per second written to the database by the last drained batch.
+     */
+    public double getDrainThroughput() {
+        return drainThroughput;
+    }
+
+    /**
+     * Transactions failed by {@link #awaitCapacity} because the journal lag did not drop in time.
+     */
+    public long getRejectedTransactions() {
+        return rejectedTransactions.get();
+    }
+
+    private void awaitDrain() {
+        try {
+            Thread.sleep(Math.min(properties.getDrainInterval().toMillis(),
+                    properties.getMaxJournalLagWait().toMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuditException("Interrupted while waiting for the audit journal to drain");
+        }
+    }
+
+    private void checkRunning() {
+        if (!running) {
+            throw new AuditException("Cannot submit AuditLogs: the audit journal is stopped");
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            boolean drained;
+            try {
+                drained = drainBatch();
+            } catch (RuntimeException e) {
+                log.error("Cannot drain audit journal, retrying in " + properties.getDrainInterval(), e);
+                drained = false;
+                journal.rewind();
+                recoverQuietly();
+            }
+            if (!drained) {
+                sleep();
+            }
+        }
+    }
+
+    /**
+     * Skips records drained by a transaction that committed before the journal checkpoint was written.
+     */
+    private void recover() {
+        AuditJournalPosition drained = transactionTemplate.execute(
+                status -> entityManager.find(AuditJournalPosition.class, properties.getJournalId()));
+        if (drained != null) {
+            journal.recover(drained.getPosition());
+        }
+    }
+
+    private void recoverQuietly() {
+        try {
+            recover();
+        } catch (RuntimeException e) {
+            log.error("Cannot read drained audit journal position", e);
+        }
+    }
+
+    private boolean drainBatch() {
+        List<byte[]> records = journal.read(batchSize);
+        if (records.isEmpty()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        List<AuditLog<?>> auditLogs = records.stream()
+                .map(AuditRecordCodec::decode)
+                .collect(Collectors.toList());
+        long position = journal.readPosition();
+        AuditVisibilityTracker.Token token = visibilityTracker.open();
+        try {
+            transactionTemplate.execute(status -> {
+                write(auditLogs);
+                entityManager.merge(new AuditJournalPosition(properties.getJournalId(), position));
+                visibilityTracker.observeLatest();
+                return null;
+            });
+        } finally {
+            visibilityTracker.close(token);
+        }
+        journal.commit();
+        publish(auditLogs);
+        drainedRecords.addAndGet(records.size());
+        drainThroughput = records.size() * 1e9 / Math.max(1, System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * The AuditLogs are already committed, so a failing listener must not make the drainer retry them.
+     */
+    private void publish(List<AuditLog<?>> auditLogs) {
+        try {
+            commitPublisher.committed(auditLogs);
+        } catch (RuntimeException e) {
+            log.error("Cannot announce drained AuditLogs", e);
+        }
+    }
+
+    private void write(List<AuditLog<?>> auditLogs) {
+        if (!tableRouting.isEnabled()) {
+            batchWriter.write(auditLogs);
+            return;
+        }
+        Map<String, List<AuditLog<?>>> byTenant = auditLogs.stream()
+                .collect(Collectors.groupingBy(auditLog -> auditLog.getTenant() == null ? "" : auditLog.getTenant(),
+                        LinkedHashMap::new, Collectors.toList()));
+        byTenant.forEach((tenant, tenantLogs) -> tableRouting.withTenant(tenant, () -> {
+            batchWriter.write(tenantLogs);
+            return null;
+        }));
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(properties.getDrainInterval().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static Thread startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
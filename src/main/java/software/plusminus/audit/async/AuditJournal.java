@@ -0,0 +1,284 @@
+package software.plusminus.audit.async;
+
+import software.plusminus.audit.exception.AuditException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of memory-mapped segment files.
+ * Every record is stored as {@code [length][crc32][payload]}; a negative length marks a rolled segment.
+ * The checkpoint file keeps the position up to which records are already drained.
+ */
+public class AuditJournal implements Closeable {
+
+    private static final int HEADER = 8;
+    private static final int ROLLED = -1;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Object forceLock = new Object();
+
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private volatile long writePosition;
+
+    private long readSegment;
+    private MappedByteBuffer readBuffer;
+    private long readPosition;
+    private volatile long checkpoint;
+
+    public AuditJournal(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            List<Long> segments = segments();
+            writeSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+            writeBuffer = map(writeSegment);
+            writeBuffer.position(recoverEnd(writeBuffer));
+            writePosition = position(writeSegment, writeBuffer.position());
+            checkpoint = readCheckpoint(segments.isEmpty() ? 0 : segments.get(0));
+            readPosition = checkpoint;
+        } catch (IOException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    /**
+     * Returns the position after the record, to be passed to {@link #force(long)}.
+     */
+    public synchronized long append(byte[] record) {
+        if (HEADER + record.length > segmentSize) {
+            throw new AuditException("Audit record of " + record.length
+                    + " bytes does not fit into journal segment of " + segmentSize + " bytes");
+        }
+        if (writeBuffer.remaining() < HEADER + record.length) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        int start = writeBuffer.position();
+        writeBuffer.position(start + 4);
+        writeBuffer.putInt((int) crc.getValue());
+        writeBuffer.put(record);
+        writeBuffer.putInt(start, record.length);
+        return position(writeSegment, writeBuffer.position());
+    }
+
+    /**
+     * Forces all appended records to disk and makes them visible to {@link #read(int)}.
+     */
+    public void force() {
+        long end;
+        synchronized (this) {
+            end = position(writeSegment, writeBuffer.position());
+        }
+        force(end);
+    }
+
+    /**
+     * Group commit: returns once everything up to {@code position} is on disk. One caller forces
+     * the records of all threads that appended meanwhile, the others find their records already forced.
+     * Appends are not blocked while the segment is forced.
+     */
+    public void force(long position) {
+        synchronized (forceLock) {
+            if (writePosition >= position) {
+                return;
+            }
+            MappedByteBuffer buffer;
+            long end;
+            synchronized (this) {
+                buffer = writeBuffer;
+                end = position(writeSegment, writeBuffer.position());
+            }
+            buffer.force();
+            writePosition = end;
+        }
+    }
+
+    /**
+     * Reads up to {@code limit} forced records following the previous read. Must be called by one thread only.
+     */
+    public List<byte[]> read(int limit) {
+        List<byte[]> records = new ArrayList<>();
+        while (records.size() < limit && readPosition < writePosition) {
+            if (readBuffer == null || readSegment != segment(readPosition)) {
+                readSegment = segment(readPosition);
+                readBuffer = mapQuietly(readSegment);
+            }
+            int offset = offset(readPosition);
+            if (offset + HEADER > segmentSize || readBuffer.getInt(offset) == ROLLED) {
+                readPosition = position(readSegment + 1, 0);
+                continue;
+            }
+            byte[] record = new byte[readBuffer.getInt(offset)];
+            ByteBuffer view = readBuffer.duplicate();
+            view.position(offset + HEADER);
+            view.get(record);
+            records.add(record);
+            readPosition = position(readSegment, offset + HEADER + record.length);
+        }
+        return records;
+    }
+
+    /**
+     * Marks everything returned by {@link #read(int)} so far as drained and removes fully drained segments.
+     */
+    public void commit() {
+        long position = readPosition;
+        try {
+            Path temp = directory.resolve(CHECKPOINT + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+                buffer.putLong(0, position);
+                channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(CHECKPOINT),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpoint = position;
+            for (Long segment : segments()) {
+                if (segment < segment(position)) {
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+            }
+        } catch (IOException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    /**
+     * Position following the records returned by {@link #read(int)} so far.
+     */
+    public long readPosition() {
+        return readPosition;
+    }
+
+    /**
+     * Moves the checkpoint to a position known to be drained, e.g. committed to the database together
+     * with the drained records before the checkpoint file could be written. Ignored if the position
+     * is not within this journal.
+     */
+    public void recover(long drainedPosition) {
+        if (drainedPosition > checkpoint && drainedPosition <= writePosition) {
+            readPosition = drainedPosition;
+            commit();
+        }
+    }
+
+    /**
+     * Goes back to the last checkpoint so that records read after it are returned again.
+     */
+    public void rewind() {
+        readPosition = checkpoint;
+    }
+
+    public long lag() {
+        long written = writePosition;
+        long drained = checkpoint;
+        return (segment(written) - segment(drained)) * segmentSize + offset(written) - offset(drained);
+    }
+
+    @Override
+    public synchronized void close() {
+        writeBuffer.force();
+    }
+
+    private void roll() {
+        if (writeBuffer.remaining() >= 4) {
+            writeBuffer.putInt(writeBuffer.position(), ROLLED);
+        }
+        writeBuffer.force();
+        writeSegment++;
+        writeBuffer = mapQuietly(writeSegment);
+    }
+
+    private int recoverEnd(ByteBuffer buffer) {
+        int offset = 0;
+        while (offset + HEADER <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER + length > segmentSize) {
+                break;
+            }
+            byte[] record = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + HEADER);
+            view.get(record);
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            offset += HEADER + length;
+        }
+        return offset;
+    }
+
+    private long readCheckpoint(long firstSegment) throws IOException {
+        Path path = directory.resolve(CHECKPOINT);
+        if (!Files.exists(path)) {
+            return position(firstSegment, 0);
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(path)).getLong();
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private MappedByteBuffer mapQuietly(long segment) {
+        try {
+            return map(segment);
+        } catch (IOException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    private MappedByteBuffer map(long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static long position(long segment, int offset) {
+        return segment << 32 | offset;
+    }
+
+    private static long segment(long position) {
+        return position >>> 32;
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+}
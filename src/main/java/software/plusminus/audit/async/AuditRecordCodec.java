@@ -0,0 +1,97 @@
+package software.plusminus.audit.async;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.lang.Nullable;
+import software.plusminus.audit.converter.AuditChangesConverter;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.crud.CrudAction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+@UtilityClass
+public class AuditRecordCodec {
+
+    private static final byte VERSION = 2;
+
+    public byte[] encode(AuditLog<?> auditLog) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeNullable(out, auditLog.getTenant());
+            out.writeUTF(auditLog.getEntityType());
+            out.writeLong(auditLog.getEntityId());
+            out.writeLong(auditLog.getTime().toEpochSecond());
+            out.writeInt(auditLog.getTime().getNano());
+            out.writeUTF(auditLog.getTime().getZone().getId());
+            writeNullable(out, auditLog.getUsername());
+            writeNullable(out, auditLog.getDevice());
+            out.writeUTF(auditLog.getAction().name());
+            UUID transactionId = auditLog.getTransactionId();
+            out.writeBoolean(transactionId != null);
+            if (transactionId != null) {
+                out.writeLong(transactionId.getMostSignificantBits());
+                out.writeLong(transactionId.getLeastSignificantBits());
+            }
+            byte[] changes = auditLog.getChanges() == null ? null : AuditChangesConverter.encode(auditLog.getChanges());
+            out.writeInt(changes == null ? -1 : changes.length);
+            if (changes != null) {
+                out.write(changes);
+            }
+        } catch (IOException e) {
+            throw new AuditException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public AuditLog<?> decode(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            byte version = in.readByte();
+            if (version < 1 || version > VERSION) {
+                throw new AuditException("Unsupported audit record version " + version);
+            }
+            AuditLog<?> auditLog = new AuditLog<>();
+            auditLog.setTenant(readNullable(in));
+            auditLog.setEntityType(in.readUTF());
+            auditLog.setEntityId(in.readLong());
+            Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+            auditLog.setTime(ZonedDateTime.ofInstant(instant, ZoneId.of(in.readUTF())));
+            auditLog.setUsername(readNullable(in));
+            auditLog.setDevice(readNullable(in));
+            auditLog.setAction(CrudAction.valueOf(in.readUTF()));
+            if (in.readBoolean()) {
+                auditLog.setTransactionId(new UUID(in.readLong(), in.readLong()));
+            }
+            int changesLength = version < 2 ? -1 : in.readInt();
+            if (changesLength >= 0) {
+                byte[] changes = new byte[changesLength];
+                in.readFully(changes);
+                auditLog.setChanges(AuditChangesConverter.decode(changes));
+            }
+            auditLog.setCurrent(true);
+            return auditLog;
+        } catch (IOException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    private void writeNullable(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
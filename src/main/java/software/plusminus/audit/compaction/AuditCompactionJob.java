@@ -0,0 +1,107 @@
+package software.plusminus.audit.compaction;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.model.AuditLog;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+
+@Component
+@ConditionalOnProperty(prefix = "plusminus.audit.compaction", name = "enabled", havingValue = "true")
+public class AuditCompactionJob {
+
+    private static final String KEYSET = " and (a.entityType > :entityType"
+            + " or (a.entityType = :entityType and a.entityId > :entityId)"
+            + " or (a.entityType = :entityType and a.entityId = :entityId and a.number > :number))"
+            + " order by a.entityType, a.entityId, a.number";
+    private static final String UNCOMPACTED = "select a from AuditLog a"
+            + " where a.current = false and a.firstNumber is null and a.time < :cutoff" + KEYSET;
+    private static final String UNCOMPACTED_BY_CURRENT_TABLE = "select a from AuditLog a"
+            + " where a.firstNumber is null and a.time < :cutoff"
+            + " and not exists (select c from AuditCurrent c where c.number = a.number)" + KEYSET;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditProperties properties;
+    private final AuditCompactor compactor;
+
+    public AuditCompactionJob(EntityManager entityManager,
+                              PlatformTransactionManager transactionManager,
+                              AuditProperties properties) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.compactor = new AuditCompactor(properties.getCompaction().getBucket());
+    }
+
+    @Scheduled(fixedDelayString = "#{@auditProperties.compaction.interval.toMillis()}")
+    public void compact() {
+        ZonedDateTime cutoff = compactor.cutoff(ZonedDateTime.now(), properties.getCompaction().getMinAge());
+        AuditLog<?> lastSeen = new AuditLog<>();
+        lastSeen.setEntityType("");
+        lastSeen.setEntityId(0L);
+        lastSeen.setNumber(0L);
+        AuditLog<?> next;
+        do {
+            AuditLog<?> position = lastSeen;
+            next = transactionTemplate.execute(status -> compactBatch(cutoff, position));
+            if (next != null) {
+                lastSeen = next;
+            }
+        } while (next != null && pause());
+    }
+
+    /**
+     * Returns the last compacted AuditLog if the batch was full, null otherwise.
+     * A group longer than the batch continues from its summary, so that it still gets one summary.
+     */
+    @SuppressWarnings("unchecked")
+    private AuditLog<?> compactBatch(ZonedDateTime cutoff, AuditLog<?> lastSeen) {
+        int batchSize = properties.getCompaction().getBatchSize();
+        List<AuditLog<?>> found = entityManager
+                .createQuery(properties.isCurrentTable() ? UNCOMPACTED_BY_CURRENT_TABLE : UNCOMPACTED)
+                .setParameter("cutoff", cutoff)
+                .setParameter("entityType", lastSeen.getEntityType())
+                .setParameter("entityId", lastSeen.getEntityId())
+                .setParameter("number", lastSeen.getNumber())
+                .setMaxResults(batchSize)
+                .getResultList();
+        if (found.isEmpty()) {
+            return null;
+        }
+        boolean full = found.size() == batchSize;
+        List<AuditLog<?>> batch = new ArrayList<>(found);
+        AuditLog<?> summary = entityManager.find(AuditLog.class, lastSeen.getNumber());
+        if (summary != null && compactor.sameGroup(summary, batch.get(0))) {
+            batch.add(0, summary);
+        }
+        List<AuditLog<?>> complete = full ? batch.subList(0, compactor.completeGroups(batch)) : batch;
+        List<Long> deleted = compactor.compact(complete);
+        entityManager.flush();
+        if (!deleted.isEmpty()) {
+            entityManager.createQuery("delete from AuditLog a where a.number in :numbers")
+                    .setParameter("numbers", deleted)
+                    .executeUpdate();
+        }
+        AuditLog<?> last = complete.get(complete.size() - 1);
+        entityManager.clear();
+        return full ? last : null;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.getCompaction().getPause().toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
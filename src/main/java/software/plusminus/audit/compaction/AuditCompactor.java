@@ -0,0 +1,133 @@
+package software.plusminus.audit.compaction;
+
+import software.plusminus.audit.model.AuditChange;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.service.AuditChangeDetector;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Collapses superseded AuditLogs of one entity and one time bucket into the last of them.
+ * The summary keeps its own number, time and action and gets the first number, the first action,
+ * the merged changes and the devices of the whole group.
+ * A summary compacted again with later AuditLogs of its group is merged into the new summary.
+ */
+public class AuditCompactor {
+
+    static final int DEVICES_LENGTH = 1024;
+    /**
+     * Last entry of the devices if not all of them fit into the column.
+     */
+    static final String MORE_DEVICES = "...";
+
+    private final long bucketMillis;
+
+    public AuditCompactor(Duration bucket) {
+        this.bucketMillis = bucket.toMillis();
+    }
+
+    /**
+     * Start of the bucket containing {@code now - minAge}, so that only whole buckets are compacted
+     * and no bucket gets a second summary when later rows reach the age.
+     */
+    public ZonedDateTime cutoff(ZonedDateTime now, Duration minAge) {
+        long millis = now.minus(minAge).toInstant().toEpochMilli();
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis - Math.floorMod(millis, bucketMillis)),
+                now.getZone());
+    }
+
+    /**
+     * Rows must be ordered by entity type, entity id and number. Summaries are updated in place.
+     *
+     * @return numbers of the AuditLogs to delete
+     */
+    public List<Long> compact(List<? extends AuditLog<?>> rows) {
+        List<Long> deleted = new ArrayList<>();
+        int from = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i == rows.size() || !sameGroup(rows.get(from), rows.get(i))) {
+                List<? extends AuditLog<?>> group = rows.subList(from, i);
+                summarize(group);
+                for (AuditLog<?> auditLog : group.subList(0, group.size() - 1)) {
+                    deleted.add(auditLog.getNumber());
+                }
+                from = i;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Index after the last complete group of a full batch; the last group may continue in the next batch.
+     * The whole batch is compacted if it is a single group, and its summary is compacted again
+     * with the rest of the group.
+     */
+    public int completeGroups(List<? extends AuditLog<?>> batch) {
+        AuditLog<?> last = batch.get(batch.size() - 1);
+        int end = batch.size();
+        while (end > 0 && sameGroup(batch.get(end - 1), last)) {
+            end--;
+        }
+        return end == 0 ? batch.size() : end;
+    }
+
+    private void summarize(List<? extends AuditLog<?>> group) {
+        AuditLog<?> first = group.get(0);
+        AuditLog<?> summary = group.get(group.size() - 1);
+        Map<String, AuditChange> changes = null;
+        Set<String> devices = new LinkedHashSet<>();
+        for (AuditLog<?> auditLog : group) {
+            if (auditLog.getChanges() != null) {
+                changes = AuditChangeDetector.merge(changes, auditLog.getChanges());
+            }
+            if (auditLog.getDevices() != null) {
+                devices.addAll(Arrays.asList(auditLog.getDevices().split(",")));
+            } else if (auditLog.getDevice() != null && !auditLog.getDevice().isEmpty()) {
+                devices.add(auditLog.getDevice());
+            }
+        }
+        summary.setFirstNumber(first.getFirstNumber() == null ? first.getNumber() : first.getFirstNumber());
+        summary.setFirstAction(first.getFirstAction() == null ? first.getAction() : first.getFirstAction());
+        summary.setDevices(joinDevices(devices));
+        if (group.size() > 1) {
+            summary.setChanges(changes);
+        }
+    }
+
+    boolean sameGroup(AuditLog<?> a, AuditLog<?> b) {
+        return Objects.equals(a.getEntityType(), b.getEntityType())
+                && Objects.equals(a.getEntityId(), b.getEntityId())
+                && bucket(a) == bucket(b);
+    }
+
+    private long bucket(AuditLog<?> auditLog) {
+        return Math.floorDiv(auditLog.getTime().toInstant().toEpochMilli(), bucketMillis);
+    }
+
+    private static String joinDevices(Set<String> devices) {
+        StringJoiner joined = new StringJoiner(",");
+        boolean more = false;
+        for (String device : devices) {
+            if (device.equals(MORE_DEVICES)
+                    || joined.length() + device.length() + 1 > DEVICES_LENGTH - MORE_DEVICES.length() - 1) {
+                more = true;
+            } else {
+                joined.add(device);
+            }
+        }
+        if (more) {
+            joined.add(MORE_DEVICES);
+        }
+        return joined.toString();
+    }
+}
@@ -1,13 +1,160 @@
 package software.plusminus.audit.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.boot.model.TypeContributor;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.TypeContributorList;
+import org.hibernate.type.StringType;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import software.plusminus.audit.async.AsyncAuditLogWriter;
+import software.plusminus.audit.converter.EntityTypeIdType;
+import software.plusminus.audit.metrics.AuditMetrics;
+import software.plusminus.audit.metrics.AuditRepositoryMetricsPostProcessor;
+import software.plusminus.audit.metrics.MicrometerAuditMetrics;
+import software.plusminus.audit.repository.AuditEntityTypeDictionary;
+import software.plusminus.audit.routing.AuditStatementInspector;
+import software.plusminus.audit.routing.AuditTableRouter;
+import software.plusminus.audit.routing.AuditTableRouting;
+import software.plusminus.audit.routing.TenantAuditTableRouter;
+import software.plusminus.audit.service.AuditPrincipalProvider;
+import software.plusminus.audit.service.ContextAuditPrincipalProvider;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.context.Context;
+import software.plusminus.security.Security;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @ComponentScan("software.plusminus.audit")
 @EntityScan("software.plusminus.audit")
 @EnableJpaRepositories("software.plusminus.audit")
 public class AuditAutoconfig {
+
+    @Configuration
+    @EnableScheduling
+    @ConditionalOnExpression("${plusminus.audit.archive.enabled:false} or ${plusminus.audit.compaction.enabled:false}")
+    static class AuditSchedulingConfig {
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "plusminus.audit", name = "compact-format", havingValue = "true")
+    static class AuditCompactFormatConfig {
+
+        @Bean
+        static AuditCompactFormatPostProcessor auditCompactFormatPostProcessor() {
+            return new AuditCompactFormatPostProcessor();
+        }
+    }
+
+    @Configuration
+    static class AuditPrincipalConfig {
+
+        @Bean
+        @ConditionalOnMissingBean(AuditPrincipalProvider.class)
+        AuditPrincipalProvider auditPrincipalProvider(Context<Security> securityContext,
+                                                      DeviceContext deviceContext,
+                                                      Context<String> tenantContext) {
+            return new ContextAuditPrincipalProvider(securityContext, deviceContext, tenantContext);
+        }
+    }
+
+    /**
+     * AuditLog maps its entity type with the {@value EntityTypeIdType#NAME} type name, so a type is contributed
+     * in both row formats. Contributors registered by the application are kept.
+     */
+    @Configuration
+    static class AuditEntityTypeConfig {
+
+        @Bean
+        @ConditionalOnProperty(prefix = "plusminus.audit", name = "compact-format", havingValue = "true")
+        HibernatePropertiesCustomizer auditEntityTypeIdCustomizer(AuditEntityTypeDictionary dictionary) {
+            return typeContributor((typeContributions, serviceRegistry) -> typeContributions.contributeType(
+                    new EntityTypeIdType(dictionary), EntityTypeIdType.NAME));
+        }
+
+        @Bean
+        @ConditionalOnProperty(prefix = "plusminus.audit", name = "compact-format", havingValue = "false",
+                matchIfMissing = true)
+        HibernatePropertiesCustomizer auditEntityTypeNameCustomizer() {
+            return typeContributor((typeContributions, serviceRegistry) -> typeContributions.contributeType(
+                    StringType.INSTANCE, EntityTypeIdType.NAME));
+        }
+
+        private static HibernatePropertiesCustomizer typeContributor(TypeContributor contributor) {
+            return hibernateProperties -> {
+                List<TypeContributor> contributors = new ArrayList<>();
+                Object present = hibernateProperties.get(EntityManagerFactoryBuilderImpl.TYPE_CONTRIBUTORS);
+                if (present instanceof TypeContributorList) {
+                    contributors.addAll(((TypeContributorList) present).getTypeContributors());
+                }
+                contributors.add(contributor);
+                hibernateProperties.put(EntityManagerFactoryBuilderImpl.TYPE_CONTRIBUTORS,
+                        (TypeContributorList) () -> contributors);
+            };
+        }
+    }
+
+    @Configuration
+    static class AuditRoutingConfig {
+
+        @Bean
+        @ConditionalOnMissingBean
+        AuditTableRouter auditTableRouter(AuditProperties properties) {
+            return new TenantAuditTableRouter(properties);
+        }
+
+        @Bean
+        @ConditionalOnExpression("!'${plusminus.audit.routing.mode:none}'.equalsIgnoreCase('none')")
+        HibernatePropertiesCustomizer auditStatementInspectorCustomizer(AuditTableRouting routing) {
+            return hibernateProperties -> hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                    new AuditStatementInspector(routing));
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class AuditMetricsConfig {
+
+        @Bean
+        AuditMetrics auditMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+                                  ObjectProvider<AsyncAuditLogWriter> asyncWriter) {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry == null) {
+                return AuditMetrics.NOOP;
+            }
+            MicrometerAuditMetrics metrics = new MicrometerAuditMetrics(registry);
+            asyncWriter.ifAvailable(metrics::bind);
+            return metrics;
+        }
+
+        @Bean
+        static AuditRepositoryMetricsPostProcessor auditRepositoryMetricsPostProcessor(
+                ObjectProvider<AuditMetrics> metrics) {
+            return new AuditRepositoryMetricsPostProcessor(metrics);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnMissingClass("io.micrometer.core.instrument.MeterRegistry")
+    static class AuditNoopMetricsConfig {
+
+        @Bean
+        AuditMetrics auditMetrics() {
+            return AuditMetrics.NOOP;
+        }
+    }
 }
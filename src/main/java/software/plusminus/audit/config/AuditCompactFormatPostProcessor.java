@@ -0,0 +1,20 @@
+package software.plusminus.audit.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+
+/**
+ * Adds the compact audit mapping to the JPA mapping resources before the EntityManagerFactory is built.
+ */
+public class AuditCompactFormatPostProcessor implements BeanPostProcessor {
+
+    static final String COMPACT_MAPPING = "META-INF/plusminus-audit/compact-orm.xml";
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof JpaProperties) {
+            ((JpaProperties) bean).getMappingResources().add(COMPACT_MAPPING);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,233 @@
+package software.plusminus.audit.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties("plusminus.audit")
+public class AuditProperties {
+
+    /**
+     * Supersede the current AuditLog with one update statement instead of loading and saving every row.
+     */
+    private boolean bulkSupersession = true;
+
+    /**
+     * Keep the latest AuditLog of every entity in the audit_current table and never update audit_log rows.
+     * Feeds of {@code AuditFeedService} are read from audit_current then. The {@code current} flag of audit_log
+     * is not maintained and stays false, so the {@code ...CurrentTrue} methods of {@code AuditLogRepository}
+     * find nothing: use {@code AuditCurrentRepository} instead.
+     */
+    private boolean currentTable;
+
+    /**
+     * Store {@code time} as epoch milliseconds, {@code transactionId} as 16 bytes and the entity type of audit_log
+     * as an integer id of the audit_entity_type dictionary.
+     * Existing tables are converted by {@code META-INF/plusminus-audit/compact-format-migration-mysql.sql}.
+     */
+    private boolean compactFormat;
+
+    /**
+     * Cap feeds of {@code AuditFeedService} at the highest number below which all transactions of this instance
+     * have completed, so that rows committed out of number order are never skipped.
+     * Not supported with {@code routing.mode} other than NONE.
+     */
+    private boolean visibilityWatermark;
+
+    /**
+     * How often the highest committed number is read from the database with {@code visibility-watermark},
+     * so that numbers committed by other instances are not hidden from feeds for longer than that.
+     */
+    private Duration visibilityRefreshInterval = Duration.ofSeconds(1);
+
+    private AuditWriteMode writeMode = AuditWriteMode.IMMEDIATE;
+
+    /**
+     * Maximum number of statements sent to the database in one JDBC batch.
+     */
+    private int batchSize = 500;
+
+    /**
+     * How long a watermark of {@code AuditWatermarkService} is trusted before it is read from the database again.
+     * Bounds the delay for changes committed by other instances.
+     */
+    private Duration watermarkTtl = Duration.ofSeconds(5);
+
+    private Async async = new Async();
+
+    private Archive archive = new Archive();
+
+    private Compaction compaction = new Compaction();
+
+    private Sse sse = new Sse();
+
+    private Routing routing = new Routing();
+
+    private Export export = new Export();
+
+    private Reactive reactive = new Reactive();
+
+    @Data
+    public static class Async {
+
+        private String journalDirectory = "audit-journal";
+
+        /**
+         * Identifies the journal in the audit_journal_position table.
+         * Must be unique among the instances writing into one database.
+         */
+        private String journalId = "default";
+
+        private int segmentSize = 64 * 1024 * 1024;
+
+        private Duration drainInterval = Duration.ofMillis(200);
+
+        /**
+         * Journal size in bytes not yet drained into the database above which committing threads are slowed down.
+         */
+        private long maxJournalLag = 256L * 1024 * 1024;
+
+        /**
+         * How long a committing transaction waits for the journal lag to drop below {@code max-journal-lag}.
+         * The transaction fails with {@code AuditException} and rolls back after that.
+         */
+        private Duration maxJournalLagWait = Duration.ofSeconds(10);
+
+    }
+
+    @Data
+    public static class Archive {
+
+        private boolean enabled;
+
+        /**
+         * Delay between the end of one archive run and the start of the next one.
+         */
+        private Duration interval = Duration.ofHours(1);
+
+        private String directory = "audit-archive";
+
+        /**
+         * Superseded AuditLogs younger than this are kept in the database.
+         */
+        private Duration minAge = Duration.ofDays(90);
+
+        private int batchSize = 1000;
+
+        /**
+         * Pause between two batches so that the job never holds locks for long.
+         */
+        private Duration pause = Duration.ofMillis(500);
+
+    }
+
+    @Data
+    public static class Compaction {
+
+        private boolean enabled;
+
+        /**
+         * Delay between the end of one compaction run and the start of the next one.
+         */
+        private Duration interval = Duration.ofHours(1);
+
+        /**
+         * Superseded AuditLogs of one entity within one bucket are collapsed into one summary AuditLog.
+         */
+        private Duration bucket = Duration.ofHours(1);
+
+        /**
+         * Buckets not entirely older than this are left alone.
+         */
+        private Duration minAge = Duration.ofDays(1);
+
+        private int batchSize = 1000;
+
+        private Duration pause = Duration.ofMillis(500);
+
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * Number of chunks scanned in parallel, each on its own read-only connection.
+         */
+        private int threads = 4;
+
+        /**
+         * Width of the number range of one chunk and its file.
+         */
+        private long chunkSize = 100_000;
+
+        /**
+         * JDBC fetch size. MySQL streams rows only with {@code useCursorFetch=true} in the connection URL.
+         */
+        private int fetchSize = 5_000;
+
+    }
+
+    @Data
+    public static class Reactive {
+
+        /**
+         * Threads running the blocking feed queries of all subscribers.
+         */
+        private int threads = 16;
+
+        /**
+         * Queries waiting for a thread above which new ones are rejected.
+         */
+        private int queuedTasks = 10_000;
+
+        /**
+         * AuditLogs loaded by one query; the next page is loaded when the subscriber requests more.
+         */
+        private int pageSize = 500;
+
+    }
+
+    @Data
+    public static class Sse {
+
+        private boolean enabled;
+
+        private String path = "/audit/changes";
+
+        private Duration timeout = Duration.ofMinutes(30);
+
+        /**
+         * Committed transactions waiting to be sent to one subscriber above which that subscriber
+         * is disconnected. Other subscribers are not affected.
+         */
+        private int queueCapacity = 1_000;
+
+    }
+
+    @Data
+    public static class Routing {
+
+        /**
+         * Every routed audit_log table generates its own numbers, so numbers are unique and ordered
+         * only within one tenant. Feeds, watermarks and exports are per tenant, but numbers of different
+         * tenants must not be compared. Hence {@code visibility-watermark} can't be enabled with routing.
+         */
+        private AuditRoutingMode mode = AuditRoutingMode.NONE;
+
+        private String schemaPrefix = "audit_";
+
+        private String createSchemaSql = "create schema if not exists {schema}";
+
+        /**
+         * Creates the table of a tenant from the shared table. The default is MySQL syntax, other databases
+         * need their own statement, which must keep the generated {@code number} column of audit_log.
+         */
+        private String createTableSql = "create table if not exists {table} like {template}";
+
+    }
+
+}
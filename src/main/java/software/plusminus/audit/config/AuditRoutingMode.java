@@ -0,0 +1,20 @@
+package software.plusminus.audit.config;
+
+public enum AuditRoutingMode {
+
+    /**
+     * All tenants share the audit_log and audit_current tables.
+     */
+    NONE,
+
+    /**
+     * Every tenant has its own tables named {@code audit_log_<tenant>} and {@code audit_current_<tenant>}.
+     */
+    TABLE,
+
+    /**
+     * Every tenant has its own schema named {@code <schema-prefix><tenant>} with audit_log and audit_current.
+     */
+    SCHEMA
+
+}
@@ -0,0 +1,20 @@
+package software.plusminus.audit.config;
+
+public enum AuditWriteMode {
+
+    /**
+     * Every AuditLog is saved as soon as {@code AuditLogService.log()} is called.
+     */
+    IMMEDIATE,
+
+    /**
+     * AuditLogs are coalesced in the transaction and written in JDBC batches right before commit.
+     */
+    WRITE_BEHIND,
+
+    /**
+     * AuditLogs are journaled on local disk after commit and drained into the database in background.
+     */
+    ASYNC
+
+}
@@ -0,0 +1,95 @@
+package software.plusminus.audit.converter;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.model.AuditChange;
+import software.plusminus.audit.util.AuditLogJson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores changes as raw-deflated JSON of at most {@value #MAX_LENGTH} bytes. If the changes don't fit,
+ * their values are dropped and only the changed fields are stored, each with null as old and new value.
+ * A real change never has equal values, so such an AuditChange always means that the values were dropped.
+ * If even the field names don't fit, the fields that fit are stored followed by {@value #MORE_FIELDS}.
+ */
+@Converter
+public class AuditChangesConverter implements AttributeConverter<Map<String, AuditChange>, byte[]> {
+
+    public static final int MAX_LENGTH = 4096;
+    public static final String MORE_FIELDS = "...";
+
+    private static final TypeReference<Map<String, AuditChange>> TYPE =
+            new TypeReference<Map<String, AuditChange>>() {
+            };
+
+    @Override
+    public byte[] convertToDatabaseColumn(Map<String, AuditChange> changes) {
+        return changes == null ? null : encode(changes);
+    }
+
+    @Override
+    public Map<String, AuditChange> convertToEntityAttribute(byte[] value) {
+        return value == null ? null : decode(value);
+    }
+
+    public static byte[] encode(Map<String, AuditChange> changes) {
+        byte[] encoded = deflate(changes);
+        if (encoded.length <= MAX_LENGTH) {
+            return encoded;
+        }
+        List<String> fields = new ArrayList<>(changes.keySet());
+        encoded = deflate(fieldsOnly(fields, false));
+        for (int size = fields.size() - 1; encoded.length > MAX_LENGTH && size >= 0; size--) {
+            encoded = deflate(fieldsOnly(fields.subList(0, size), true));
+        }
+        return encoded;
+    }
+
+    private static Map<String, AuditChange> fieldsOnly(List<String> fields, boolean truncated) {
+        Map<String, AuditChange> fieldsOnly = new LinkedHashMap<>();
+        fields.forEach(field -> fieldsOnly.put(field, new AuditChange()));
+        if (truncated) {
+            fieldsOnly.put(MORE_FIELDS, new AuditChange());
+        }
+        return fieldsOnly;
+    }
+
+    private static byte[] deflate(Map<String, AuditChange> changes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try (OutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            AuditLogJson.write(out, changes);
+        } catch (IOException e) {
+            throw new AuditException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Map<String, AuditChange> decode(byte[] value) {
+        Inflater inflater = new Inflater(true);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(value), inflater)) {
+            return AuditLogJson.read(in, TYPE);
+        } catch (IOException e) {
+            throw new AuditException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package software.plusminus.audit.converter;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.UserType;
+import software.plusminus.audit.repository.AuditEntityTypeDictionary;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+
+/**
+ * Maps an entity class name to its integer id in {@link AuditEntityTypeDictionary}.
+ * Registered as {@value #NAME} with the compact row format, {@value #NAME} is a plain string otherwise.
+ * Ids missing from the dictionary cache are resolved on the connection of the statement.
+ */
+public class EntityTypeIdType implements UserType {
+
+    public static final String NAME = "audit_entity_type";
+
+    private final AuditEntityTypeDictionary dictionary;
+
+    public EntityTypeIdType(AuditEntityTypeDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public int[] sqlTypes() {
+        return new int[] {Types.INTEGER};
+    }
+
+    @Override
+    public Class<?> returnedClass() {
+        return String.class;
+    }
+
+    @Override
+    public boolean equals(Object x, Object y) {
+        return Objects.equals(x, y);
+    }
+
+    @Override
+    public int hashCode(Object x) {
+        return Objects.hashCode(x);
+    }
+
+    @Override
+    public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner)
+            throws SQLException {
+        int id = rs.getInt(names[0]);
+        return rs.wasNull() ? null : dictionary.name(id, rs.getStatement().getConnection());
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, Object value, int index, SharedSessionContractImplementor session)
+            throws SQLException {
+        if (value == null) {
+            st.setNull(index, Types.INTEGER);
+        } else {
+            st.setInt(index, dictionary.id((String) value, st.getConnection()));
+        }
+    }
+
+    @Override
+    public Object deepCopy(Object value) {
+        return value;
+    }
+
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+
+    @Override
+    public Serializable disassemble(Object value) {
+        return (Serializable) value;
+    }
+
+    @Override
+    public Object assemble(Serializable cached, Object owner) {
+        return cached;
+    }
+
+    @Override
+    public Object replace(Object original, Object target, Object owner) {
+        return original;
+    }
+}
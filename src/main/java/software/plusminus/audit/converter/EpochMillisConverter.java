@@ -0,0 +1,24 @@
+package software.plusminus.audit.converter;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores {@link ZonedDateTime} as milliseconds since the epoch. Values are read back in the system time zone.
+ */
+@Converter
+public class EpochMillisConverter implements AttributeConverter<ZonedDateTime, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(ZonedDateTime time) {
+        return time == null ? null : time.toInstant().toEpochMilli();
+    }
+
+    @Override
+    public ZonedDateTime convertToEntityAttribute(Long millis) {
+        return millis == null ? null : ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
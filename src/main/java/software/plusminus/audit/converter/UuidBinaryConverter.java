@@ -0,0 +1,32 @@
+package software.plusminus.audit.converter;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+@Converter
+public class UuidBinaryConverter implements AttributeConverter<UUID, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(UUID uuid) {
+        return uuid == null ? null : toBytes(uuid);
+    }
+
+    @Override
+    public UUID convertToEntityAttribute(byte[] value) {
+        return value == null ? null : fromBytes(value);
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] value) {
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
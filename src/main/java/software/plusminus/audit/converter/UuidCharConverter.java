@@ -0,0 +1,19 @@
+package software.plusminus.audit.converter;
+
+import java.util.UUID;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+@Converter
+public class UuidCharConverter implements AttributeConverter<UUID, String> {
+
+    @Override
+    public String convertToDatabaseColumn(UUID uuid) {
+        return uuid == null ? null : uuid.toString();
+    }
+
+    @Override
+    public UUID convertToEntityAttribute(String value) {
+        return value == null ? null : UUID.fromString(value);
+    }
+}
@@ -0,0 +1,18 @@
+package software.plusminus.audit.event;
+
+import lombok.Value;
+import software.plusminus.audit.model.AuditLog;
+
+import java.util.List;
+
+/**
+ * Published with AuditLogs once they are committed to the database, with their numbers assigned.
+ * In async mode it is published by the journal drainer after the drain transaction commits.
+ * Published only if {@code plusminus.audit.sse.enabled} is true.
+ */
+@Value
+public class AuditLogsCommittedEvent {
+
+    List<AuditLog<?>> auditLogs;
+
+}
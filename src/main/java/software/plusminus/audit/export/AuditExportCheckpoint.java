@@ -0,0 +1,75 @@
+package software.plusminus.audit.export;
+
+import software.plusminus.audit.exception.AuditException;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The first line describes the export and fixes its upper number, the next lines are the lower bounds
+ * of completed chunks. Every line is synced before the next chunk is reported as done.
+ */
+class AuditExportCheckpoint {
+
+    static final String FILE_NAME = "audit-export.checkpoint";
+
+    private final Path file;
+    private final long maxNumber;
+    private final Set<Long> completed = ConcurrentHashMap.newKeySet();
+
+    private AuditExportCheckpoint(Path file, long maxNumber) {
+        this.file = file;
+        this.maxNumber = maxNumber;
+    }
+
+    static AuditExportCheckpoint open(Path directory, String description, long currentMaxNumber)
+            throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            AuditExportCheckpoint checkpoint = new AuditExportCheckpoint(file, currentMaxNumber);
+            checkpoint.append(currentMaxNumber + " " + description);
+            return checkpoint;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        String header = lines.get(0);
+        int separator = header.indexOf(' ');
+        if (!header.substring(separator + 1).equals(description)) {
+            throw new AuditException("Checkpoint " + file + " belongs to another export: " + header);
+        }
+        AuditExportCheckpoint checkpoint = new AuditExportCheckpoint(file,
+                Long.parseLong(header.substring(0, separator)));
+        lines.subList(1, lines.size()).stream()
+                .filter(line -> !line.isEmpty())
+                .map(Long::valueOf)
+                .forEach(checkpoint.completed::add);
+        return checkpoint;
+    }
+
+    long getMaxNumber() {
+        return maxNumber;
+    }
+
+    boolean isCompleted(long from) {
+        return completed.contains(from);
+    }
+
+    synchronized void complete(long from) {
+        append(Long.toString(from));
+        completed.add(from);
+    }
+
+    private void append(String line) {
+        try (FileOutputStream out = new FileOutputStream(file.toFile(), true)) {
+            out.write((line + '\n').getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            throw new AuditException(e);
+        }
+    }
+}
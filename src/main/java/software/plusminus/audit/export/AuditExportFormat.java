@@ -0,0 +1,15 @@
+package software.plusminus.audit.export;
+
+public enum AuditExportFormat {
+
+    /**
+     * One AuditLog JSON per line, the same as in archive segments.
+     */
+    NDJSON,
+
+    /**
+     * A header line and one line per AuditLog, changes as a JSON column.
+     */
+    CSV
+
+}
@@ -0,0 +1,33 @@
+package software.plusminus.audit.export;
+
+import lombok.Data;
+import org.springframework.lang.Nullable;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Data
+public class AuditExportRequest {
+
+    /**
+     * Receives the gzipped chunk files and the checkpoint. An export is resumed by running it again
+     * with the same directory and parameters.
+     */
+    private Path directory;
+
+    private AuditExportFormat format = AuditExportFormat.NDJSON;
+
+    /**
+     * All tenants if null, AuditLogs without tenant if empty.
+     * Required if the audit tables are routed per tenant, since every tenant has its own tables.
+     */
+    @Nullable
+    private String tenant;
+
+    /**
+     * All entity types if null or empty.
+     */
+    @Nullable
+    private List<String> types;
+
+}
@@ -0,0 +1,288 @@
+package software.plusminus.audit.export;
+
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.converter.AuditChangesConverter;
+import software.plusminus.audit.converter.UuidBinaryConverter;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.repository.AuditEntityTypeDictionary;
+import software.plusminus.audit.routing.AuditTableRouting;
+import software.plusminus.audit.util.AuditLogJson;
+import software.plusminus.crud.CrudAction;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import javax.sql.DataSource;
+
+/**
+ * Exports AuditLogs into gzipped NDJSON or CSV files, one file per chunk of the number range.
+ * Chunks are scanned in parallel by plain JDBC on read-only connections, so no row ever enters
+ * a persistence context and memory is bounded by the fetch size of every thread.
+ */
+@Component
+public class AuditExporter {
+
+    private static final String COLUMNS = "number, tenant, entity_type, entity_id, time, username, device, action,"
+            + " current, transaction_id, changes, first_number, first_action, devices";
+    private static final String CSV_HEADER = COLUMNS.replace(" ", "");
+
+    private final DataSource dataSource;
+    private final AuditTableRouting tableRouting;
+    private final AuditProperties properties;
+    private final AuditEntityTypeDictionary entityTypes;
+
+    public AuditExporter(DataSource dataSource, AuditTableRouting tableRouting, AuditProperties properties,
+                         AuditEntityTypeDictionary entityTypes) {
+        this.dataSource = dataSource;
+        this.tableRouting = tableRouting;
+        this.entityTypes = entityTypes;
+        this.properties = properties;
+    }
+
+    /**
+     * Exports AuditLogs up to the highest number present when the export was started for the first time.
+     * Chunks completed by a previous run with the same directory are skipped.
+     * A tenant is required if the audit tables are routed per tenant.
+     *
+     * @return number of AuditLogs exported by this run
+     */
+    public long export(AuditExportRequest request) {
+        if (request.getTenant() == null && tableRouting.isEnabled()) {
+            throw new AuditException("Routed AuditLogs are exported per tenant: the tenant of the export is null");
+        }
+        AuditProperties.Export export = properties.getExport();
+        String sql = tableRouting.withTenant(request.getTenant(), () -> tableRouting.route(query(request)));
+        ExecutorService executor = Executors.newFixedThreadPool(export.getThreads());
+        try {
+            Files.createDirectories(request.getDirectory());
+            AuditExportCheckpoint checkpoint = AuditExportCheckpoint.open(request.getDirectory(),
+                    describe(request, export.getChunkSize()), maxNumber(sql, request));
+            List<Future<Long>> chunks = new ArrayList<>();
+            for (long from = 0; from < checkpoint.getMaxNumber(); from += export.getChunkSize()) {
+                if (checkpoint.isCompleted(from)) {
+                    continue;
+                }
+                long chunkFrom = from;
+                long chunkTo = Math.min(from + export.getChunkSize(), checkpoint.getMaxNumber());
+                chunks.add(executor.submit(() -> {
+                    long rows = exportChunk(sql, request, chunkFrom, chunkTo);
+                    checkpoint.complete(chunkFrom);
+                    return rows;
+                }));
+            }
+            long rows = 0;
+            for (Future<Long> chunk : chunks) {
+                rows += chunk.get();
+            }
+            return rows;
+        } catch (IOException | ExecutionException e) {
+            throw new AuditException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuditException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long exportChunk(String sql, AuditExportRequest request, long from, long to)
+            throws SQLException, IOException {
+        String extension = request.getFormat() == AuditExportFormat.CSV ? ".csv.gz" : ".ndjson.gz";
+        Path file = request.getDirectory().resolve(String.format("audit-%020d-%020d%s", from, to, extension));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            boolean readOnly = connection.isReadOnly();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = prepare(connection, sql, request, from, to);
+                 ResultSet resultSet = statement.executeQuery();
+                 FileOutputStream out = new FileOutputStream(temp.toFile());
+                 GZIPOutputStream gzip = new GZIPOutputStream(out);
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8))) {
+                if (request.getFormat() == AuditExportFormat.CSV) {
+                    writer.write(CSV_HEADER);
+                    writer.write('\n');
+                }
+                while (resultSet.next()) {
+                    AuditLog<?> auditLog = read(resultSet);
+                    writer.write(request.getFormat() == AuditExportFormat.CSV
+                            ? toCsv(auditLog)
+                            : AuditLogJson.toJson(auditLog));
+                    writer.write('\n');
+                    rows++;
+                }
+                writer.flush();
+                gzip.finish();
+                out.getFD().sync();
+            } finally {
+                // A pooled connection is returned in the state it was borrowed in
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+                connection.setReadOnly(readOnly);
+            }
+        }
+        if (rows == 0) {
+            Files.delete(temp);
+        } else {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return rows;
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, AuditExportRequest request,
+                                      long from, long to) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql + " and number > ? and number <= ?"
+                + " order by number", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(properties.getExport().getFetchSize());
+        int index = setFilters(statement, request);
+        statement.setLong(index++, from);
+        statement.setLong(index, to);
+        return statement;
+    }
+
+    private long maxNumber(String sql, AuditExportRequest request) {
+        String max = "select max(number)" + sql.substring(sql.indexOf(" from "));
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(max)) {
+            setFilters(statement, request);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    private static String query(AuditExportRequest request) {
+        StringBuilder sql = new StringBuilder("select ").append(COLUMNS).append(" from audit_log where 1 = 1");
+        if (request.getTenant() != null) {
+            sql.append(request.getTenant().isEmpty() ? " and tenant is null" : " and tenant = ?");
+        }
+        if (request.getTypes() != null && !request.getTypes().isEmpty()) {
+            sql.append(" and entity_type in (")
+                    .append(String.join(", ", Collections.nCopies(request.getTypes().size(), "?")))
+                    .append(')');
+        }
+        return sql.toString();
+    }
+
+    private int setFilters(PreparedStatement statement, AuditExportRequest request) throws SQLException {
+        int index = 1;
+        if (request.getTenant() != null && !request.getTenant().isEmpty()) {
+            statement.setString(index++, request.getTenant());
+        }
+        if (request.getTypes() != null) {
+            for (String type : request.getTypes()) {
+                if (properties.isCompactFormat()) {
+                    statement.setInt(index++, entityTypes.id(type, statement.getConnection()));
+                } else {
+                    statement.setString(index++, type);
+                }
+            }
+        }
+        return index;
+    }
+
+    private static String describe(AuditExportRequest request, long chunkSize) {
+        return request.getFormat() + " tenant=" + request.getTenant() + " types=" + request.getTypes()
+                + " chunk=" + chunkSize;
+    }
+
+    private AuditLog<?> read(ResultSet resultSet) throws SQLException {
+        AuditLog<?> auditLog = new AuditLog<>();
+        auditLog.setNumber(resultSet.getLong("number"));
+        auditLog.setTenant(resultSet.getString("tenant"));
+        auditLog.setEntityType(properties.isCompactFormat()
+                ? entityTypes.name(resultSet.getInt("entity_type"), resultSet.getStatement().getConnection())
+                : resultSet.getString("entity_type"));
+        auditLog.setEntityId(resultSet.getLong("entity_id"));
+        auditLog.setTime(readTime(resultSet));
+        auditLog.setUsername(resultSet.getString("username"));
+        auditLog.setDevice(resultSet.getString("device"));
+        auditLog.setAction(CrudAction.valueOf(resultSet.getString("action")));
+        auditLog.setCurrent(resultSet.getBoolean("current"));
+        auditLog.setTransactionId(readTransactionId(resultSet));
+        byte[] changes = resultSet.getBytes("changes");
+        auditLog.setChanges(changes == null ? null : AuditChangesConverter.decode(changes));
+        long firstNumber = resultSet.getLong("first_number");
+        auditLog.setFirstNumber(resultSet.wasNull() ? null : firstNumber);
+        String firstAction = resultSet.getString("first_action");
+        auditLog.setFirstAction(firstAction == null ? null : CrudAction.valueOf(firstAction));
+        auditLog.setDevices(resultSet.getString("devices"));
+        return auditLog;
+    }
+
+    private ZonedDateTime readTime(ResultSet resultSet) throws SQLException {
+        if (properties.isCompactFormat()) {
+            return ZonedDateTime.ofInstant(Instant.ofEpochMilli(resultSet.getLong("time")), ZoneId.systemDefault());
+        }
+        Timestamp time = resultSet.getTimestamp("time");
+        return ZonedDateTime.ofInstant(time.toInstant(), ZoneId.systemDefault());
+    }
+
+    @Nullable
+    private UUID readTransactionId(ResultSet resultSet) throws SQLException {
+        if (properties.isCompactFormat()) {
+            byte[] bytes = resultSet.getBytes("transaction_id");
+            return bytes == null ? null : UuidBinaryConverter.fromBytes(bytes);
+        }
+        String transactionId = resultSet.getString("transaction_id");
+        return transactionId == null ? null : UUID.fromString(transactionId);
+    }
+
+    private static String toCsv(AuditLog<?> auditLog) {
+        return String.join(",",
+                String.valueOf(auditLog.getNumber()),
+                csv(auditLog.getTenant()),
+                csv(auditLog.getEntityType()),
+                String.valueOf(auditLog.getEntityId()),
+                auditLog.getTime().toInstant().toString(),
+                csv(auditLog.getUsername()),
+                csv(auditLog.getDevice()),
+                auditLog.getAction().name(),
+                String.valueOf(auditLog.isCurrent()),
+                auditLog.getTransactionId() == null ? "" : auditLog.getTransactionId().toString(),
+                auditLog.getChanges() == null ? "" : csv(AuditLogJson.toJson(auditLog.getChanges())),
+                auditLog.getFirstNumber() == null ? "" : auditLog.getFirstNumber().toString(),
+                auditLog.getFirstAction() == null ? "" : auditLog.getFirstAction().name(),
+                csv(auditLog.getDevices()));
+    }
+
+    private static String csv(@Nullable String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,34 @@
+package software.plusminus.audit.metrics;
+
+import software.plusminus.crud.CrudAction;
+
+/**
+ * Receives measurements of the audit write and feed paths. Every method does nothing by default.
+ */
+public interface AuditMetrics {
+
+    AuditMetrics NOOP = new AuditMetrics() {
+    };
+
+    /**
+     * A new AuditLog is created. Calls merged into the AuditLog already present in the transaction are reported
+     * by {@link #coalesced} only, calls without changes are not reported.
+     */
+    default void logged(String entityType, CrudAction action, long nanos) {
+    }
+
+    /**
+     * A new action is merged into the AuditLog already present in the transaction.
+     */
+    default void coalesced(CrudAction presentAction, CrudAction newAction) {
+    }
+
+    default void transactionCommitted(int auditLogs) {
+    }
+
+    default void unmarked(int rows) {
+    }
+
+    default void feedQueried(String query, long nanos, int rows) {
+    }
+}
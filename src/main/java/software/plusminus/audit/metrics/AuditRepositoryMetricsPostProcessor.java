@@ -0,0 +1,45 @@
+package software.plusminus.audit.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.domain.Page;
+import software.plusminus.audit.repository.AuditLogRepository;
+
+/**
+ * Times the {@code Page} queries of {@link AuditLogRepository} as feed queries named after the repository
+ * method, the same way {@code AuditFeedService} times its own queries.
+ */
+public class AuditRepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<AuditMetrics> metrics;
+
+    public AuditRepositoryMetricsPostProcessor(ObjectProvider<AuditMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof AuditLogRepository && bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            ((Advised) bean).addAdvice(new PageQueryInterceptor());
+        }
+        return bean;
+    }
+
+    private class PageQueryInterceptor implements MethodInterceptor {
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            if (!Page.class.isAssignableFrom(invocation.getMethod().getReturnType())) {
+                return invocation.proceed();
+            }
+            long start = System.nanoTime();
+            Object result = invocation.proceed();
+            metrics.getObject().feedQueried(invocation.getMethod().getName(), System.nanoTime() - start,
+                    ((Page<?>) result).getNumberOfElements());
+            return result;
+        }
+    }
+}
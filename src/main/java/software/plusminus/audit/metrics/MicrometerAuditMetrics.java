@@ -0,0 +1,98 @@
+package software.plusminus.audit.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.plusminus.audit.async.AsyncAuditLogWriter;
+import software.plusminus.crud.CrudAction;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters are registered on first use and cached, so recording does not look them up in the registry.
+ */
+public class MicrometerAuditMetrics implements AuditMetrics {
+
+    private static final String PREFIX = "plusminus.audit.";
+
+    private final MeterRegistry registry;
+    private final DistributionSummary transactionLogs;
+    private final DistributionSummary unmarkedRows;
+    private final Map<String, Map<CrudAction, Timer>> logTimers = new ConcurrentHashMap<>();
+    private final Map<CrudAction, Map<CrudAction, Counter>> coalescedCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> feedTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> feedRows = new ConcurrentHashMap<>();
+
+    public MicrometerAuditMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.transactionLogs = DistributionSummary.builder(PREFIX + "transaction.logs")
+                .description("AuditLogs produced by one committed transaction")
+                .register(registry);
+        this.unmarkedRows = DistributionSummary.builder(PREFIX + "unmarked.rows")
+                .description("AuditLog rows no longer current after one log() call")
+                .register(registry);
+    }
+
+    public void bind(AsyncAuditLogWriter asyncWriter) {
+        Gauge.builder(PREFIX + "async.queue.depth", asyncWriter, AsyncAuditLogWriter::getQueueDepth)
+                .register(registry);
+        Gauge.builder(PREFIX + "async.journal.lag", asyncWriter, AsyncAuditLogWriter::getJournalLag)
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder(PREFIX + "async.drain.throughput", asyncWriter, AsyncAuditLogWriter::getDrainThroughput)
+                .baseUnit("records/s")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "async.drained", asyncWriter, AsyncAuditLogWriter::getDrainedRecords)
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "async.rejected", asyncWriter, AsyncAuditLogWriter::getRejectedTransactions)
+                .description("Transactions failed because the audit journal did not drain in time")
+                .register(registry);
+    }
+
+    @Override
+    public void logged(String entityType, CrudAction action, long nanos) {
+        logTimers.computeIfAbsent(entityType, type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(action, a -> Timer.builder(PREFIX + "log")
+                        .tag("entityType", entityType)
+                        .tag("action", action.name())
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void coalesced(CrudAction presentAction, CrudAction newAction) {
+        coalescedCounters.computeIfAbsent(presentAction, a -> new ConcurrentHashMap<>())
+                .computeIfAbsent(newAction, a -> Counter.builder(PREFIX + "coalesced")
+                        .tag("present", presentAction.name())
+                        .tag("action", newAction.name())
+                        .register(registry))
+                .increment();
+    }
+
+    @Override
+    public void transactionCommitted(int auditLogs) {
+        transactionLogs.record(auditLogs);
+    }
+
+    @Override
+    public void unmarked(int rows) {
+        unmarkedRows.record(rows);
+    }
+
+    @Override
+    public void feedQueried(String query, long nanos, int rows) {
+        feedTimers.computeIfAbsent(query, q -> Timer.builder(PREFIX + "feed")
+                        .tag("query", query)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        feedRows.computeIfAbsent(query, q -> DistributionSummary.builder(PREFIX + "feed.rows")
+                        .tag("query", query)
+                        .register(registry))
+                .record(rows);
+    }
+}
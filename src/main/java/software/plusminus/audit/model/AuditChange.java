@@ -0,0 +1,26 @@
+package software.plusminus.audit.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.lang.Nullable;
+
+/**
+ * Old and new value of one field, serialized as a two-element JSON array.
+ * Values read back from the database are plain JSON types.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"oldValue", "newValue"})
+public class AuditChange {
+
+    @Nullable
+    private Object oldValue;
+    @Nullable
+    private Object newValue;
+
+}
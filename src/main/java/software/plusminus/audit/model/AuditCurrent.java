@@ -0,0 +1,64 @@
+package software.plusminus.audit.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.Filter;
+import software.plusminus.crud.CrudAction;
+
+import java.time.ZonedDateTime;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+@Data
+@EqualsAndHashCode(of = {"tenant", "entityType", "entityId"})
+@ToString(of = {"tenant", "entityType", "entityId", "number"})
+@Filter(name = "tenantFilter", condition = "tenant = :tenant or (:tenant = '' and tenant is null)")
+@Table(name = "audit_current", indexes = @Index(columnList = "tenant, entity_type, number"))
+@IdClass(AuditCurrentId.class)
+@Entity
+public class AuditCurrent {
+
+    /**
+     * Empty for AuditLogs without tenant, as a primary key column can't be null.
+     */
+    @Id
+    @Column(nullable = false)
+    private String tenant;
+
+    @Id
+    @Column(name = "entity_type")
+    private String entityType;
+
+    @Id
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    @Column(nullable = false)
+    private Long number;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "number", insertable = false, updatable = false)
+    @JsonIgnore
+    private AuditLog<?> auditLog;
+
+    private ZonedDateTime time;
+
+    private String username;
+
+    private String device;
+
+    @Enumerated(EnumType.STRING)
+    private CrudAction action;
+
+}
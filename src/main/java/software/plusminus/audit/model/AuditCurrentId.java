@@ -0,0 +1,25 @@
+package software.plusminus.audit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.lang.Nullable;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditCurrentId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String tenant;
+    private String entityType;
+    private Long entityId;
+
+    public static AuditCurrentId of(@Nullable String tenant, String entityType, Long entityId) {
+        return new AuditCurrentId(tenant == null ? "" : tenant, entityType, entityId);
+    }
+
+}
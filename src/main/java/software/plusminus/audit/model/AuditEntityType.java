@@ -0,0 +1,27 @@
+package software.plusminus.audit.model;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Dictionary of entity class names, referenced by {@code audit_log.entity_type} in the compact row format.
+ */
+@Data
+@Table(name = "audit_entity_type")
+@Entity
+public class AuditEntityType {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false, unique = true)
+    private String name;
+
+}
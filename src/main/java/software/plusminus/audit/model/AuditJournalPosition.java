@@ -0,0 +1,26 @@
+package software.plusminus.audit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Journal position drained into the database, committed in the same transaction as the drained AuditLogs.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "audit_journal_position")
+@Entity
+public class AuditJournalPosition {
+
+    @Id
+    private String journal;
+
+    private long position;
+
+}
@@ -10,11 +10,16 @@ import org.hibernate.annotations.Filter;
 import org.hibernate.annotations.FilterDef;
 import org.hibernate.annotations.ParamDef;
 import org.hibernate.annotations.Type;
+import software.plusminus.audit.converter.AuditChangesConverter;
+import software.plusminus.audit.converter.EntityTypeIdType;
+import software.plusminus.audit.converter.UuidCharConverter;
 import software.plusminus.crud.CrudAction;
 
 import java.time.ZonedDateTime;
+import java.util.Map;
 import java.util.UUID;
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
@@ -32,7 +37,10 @@ import javax.persistence.Table;
 @ToString(of = "number")
 @FilterDef(name = "tenantFilter", parameters = @ParamDef(name = "tenant", type = "string"))
 @Filter(name = "tenantFilter", condition = "tenant = :tenant or (:tenant = '' and tenant is null)")
-@Table(indexes = @Index(columnList = "tenant, entity_type, current, number"))
+@Table(indexes = {
+        @Index(columnList = "tenant, entity_type, current, number"),
+        @Index(columnList = "entity_type, entity_id, number")
+})
 @Entity
 public class AuditLog<T> {
 
@@ -47,13 +55,14 @@ public class AuditLog<T> {
             fetch = FetchType.LAZY)
     @AnyMetaDef(
             idType = "long",
-            metaType = "string",
+            metaType = EntityTypeIdType.NAME,
             metaValues = {})
     @JoinColumn(name = "entity_id")
     @JsonIgnore
     private T entity;
 
     @Column(name = "entity_type", insertable = false, updatable = false, nullable = false)
+    @Type(type = EntityTypeIdType.NAME)
     private String entityType;
 
     @Column(name = "entity_id", insertable = false, updatable = false, nullable = false)
@@ -74,7 +83,31 @@ public class AuditLog<T> {
     private boolean current;
 
     @Column(updatable = false)
-    @Type(type = "uuid-char")
+    @Convert(converter = UuidCharConverter.class)
     private UUID transactionId;
 
+    /**
+     * Changed fields of entities with {@code @Auditable(changes = true)}, null otherwise.
+     * Values are dropped if they don't fit into the column, see {@link AuditChangesConverter}.
+     */
+    @Column(length = AuditChangesConverter.MAX_LENGTH)
+    @Convert(converter = AuditChangesConverter.class)
+    private Map<String, AuditChange> changes;
+
+    /**
+     * Set by the compaction job: the number of the first AuditLog this one summarizes, its own number otherwise.
+     * Null until the AuditLog is compacted.
+     */
+    private Long firstNumber;
+
+    @Enumerated(EnumType.STRING)
+    private CrudAction firstAction;
+
+    /**
+     * Comma separated devices of the AuditLogs summarized by the compaction job.
+     * Ends with {@code ...} if not all of them fit.
+     */
+    @Column(length = 1024)
+    private String devices;
+
 }
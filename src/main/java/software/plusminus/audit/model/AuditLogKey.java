@@ -0,0 +1,13 @@
+package software.plusminus.audit.model;
+
+import lombok.Value;
+import org.springframework.lang.Nullable;
+
+@Value
+public class AuditLogKey {
+
+    String entityType;
+    @Nullable
+    Long entityId;
+
+}
@@ -0,0 +1,21 @@
+package software.plusminus.audit.model;
+
+import software.plusminus.crud.CrudAction;
+
+import java.time.ZonedDateTime;
+
+public interface AuditLogView {
+
+    Long getNumber();
+
+    String getEntityType();
+
+    Long getEntityId();
+
+    CrudAction getAction();
+
+    String getDevice();
+
+    ZonedDateTime getTime();
+
+}
@@ -0,0 +1,124 @@
+package software.plusminus.audit.reactive;
+
+import org.hibernate.Session;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.data.domain.Slice;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogView;
+import software.plusminus.audit.routing.AuditTableRouting;
+import software.plusminus.audit.service.AuditFeedService;
+import software.plusminus.audit.service.AuditWatermarkService;
+import software.plusminus.context.Context;
+
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+
+/**
+ * Feeds of {@link AuditFeedService} as Flux. The blocking queries run page by page on a bounded scheduler,
+ * and the next page is queried only when the subscriber requests more, so waiting subscribers hold no thread.
+ * Feeds without news according to {@link AuditWatermarkService} complete without a query.
+ * AuditLogs are emitted after their transaction has ended, so their entities are loaded with the page;
+ * the entity of an AuditLog whose entity no longer exists is not available.
+ * <p>
+ * The tenant is captured on the calling thread, because the tenant context is not available on the scheduler.
+ */
+@Service
+@ConditionalOnClass(name = "reactor.core.publisher.Flux")
+public class ReactiveAuditFeedService {
+
+    private final AuditFeedService feedService;
+    private final AuditWatermarkService watermarkService;
+    private final AuditTableRouting tableRouting;
+    private final EntityManager entityManager;
+    private final Context<String> tenantContext;
+    private final TransactionTemplate transactionTemplate;
+    private final Scheduler scheduler;
+    private final int pageSize;
+
+    public ReactiveAuditFeedService(AuditFeedService feedService,
+                                    AuditWatermarkService watermarkService,
+                                    AuditTableRouting tableRouting,
+                                    EntityManager entityManager,
+                                    Context<String> tenantContext,
+                                    PlatformTransactionManager transactionManager,
+                                    AuditProperties properties) {
+        this.feedService = feedService;
+        this.watermarkService = watermarkService;
+        this.tableRouting = tableRouting;
+        this.entityManager = entityManager;
+        this.tenantContext = tenantContext;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        AuditProperties.Reactive reactive = properties.getReactive();
+        this.scheduler = Schedulers.newBoundedElastic(reactive.getThreads(), reactive.getQueuedTasks(),
+                "audit-feed");
+        this.pageSize = reactive.getPageSize();
+    }
+
+    @PreDestroy
+    public void dispose() {
+        scheduler.dispose();
+    }
+
+    public Flux<AuditLog<?>> findChanges(List<String> types, @Nullable String ignoreDevice, long lastSeen) {
+        return findChanges(tenantContext.get(), types, ignoreDevice, lastSeen);
+    }
+
+    /**
+     * A null tenant selects AuditLogs without tenant.
+     */
+    public Flux<AuditLog<?>> findChanges(@Nullable String tenant, List<String> types, @Nullable String ignoreDevice,
+                                        long lastSeen) {
+        return feed(tenant, types, lastSeen,
+                after -> feedService.findChangesWithEntities(types, ignoreDevice, after, pageSize),
+                AuditLog::getNumber);
+    }
+
+    public Flux<AuditLogView> findChangeViews(List<String> types, @Nullable String ignoreDevice, long lastSeen) {
+        return findChangeViews(tenantContext.get(), types, ignoreDevice, lastSeen);
+    }
+
+    public Flux<AuditLogView> findChangeViews(@Nullable String tenant, List<String> types,
+                                              @Nullable String ignoreDevice, long lastSeen) {
+        return feed(tenant, types, lastSeen,
+                after -> feedService.findChangeViews(types, ignoreDevice, after, pageSize),
+                AuditLogView::getNumber);
+    }
+
+    private <T> Flux<T> feed(@Nullable String tenant, List<String> types, long lastSeen,
+                             LongFunction<Slice<T>> query, ToLongFunction<T> number) {
+        return Mono.fromCallable(() -> watermarkService.hasChanges(tenant, types, lastSeen))
+                .subscribeOn(scheduler)
+                .flatMapMany(hasChanges -> !hasChanges
+                        ? Flux.<Slice<T>>empty()
+                        : page(tenant, lastSeen, query).expand(slice -> slice.hasNext() && slice.hasContent()
+                                ? page(tenant, number.applyAsLong(last(slice)), query)
+                                : Mono.empty()))
+                .flatMapIterable(Slice::getContent, 1);
+    }
+
+    private <T> Mono<Slice<T>> page(@Nullable String tenant, long lastSeen, LongFunction<Slice<T>> query) {
+        return Mono.fromCallable(() -> tableRouting.withTenant(tenant, () -> transactionTemplate.execute(status -> {
+            entityManager.unwrap(Session.class)
+                    .enableFilter("tenantFilter")
+                    .setParameter("tenant", tenant == null ? "" : tenant);
+            return query.apply(lastSeen);
+        }))).subscribeOn(scheduler);
+    }
+
+    private static <T> T last(Slice<T> slice) {
+        return slice.getContent().get(slice.getNumberOfElements() - 1);
+    }
+}
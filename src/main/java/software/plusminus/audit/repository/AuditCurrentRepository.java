@@ -0,0 +1,87 @@
+package software.plusminus.audit.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import software.plusminus.audit.model.AuditCurrent;
+import software.plusminus.audit.model.AuditCurrentId;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogView;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+public interface AuditCurrentRepository extends Repository<AuditCurrent, AuditCurrentId> {
+
+    Optional<AuditCurrent> findById(AuditCurrentId id);
+
+    /**
+     * The counterpart of {@code AuditLogRepository.findByEntityTypeAndEntityIdAndCurrentTrue}.
+     */
+    @Query("select c.auditLog from AuditCurrent c where c.entityType = :type and c.entityId = :id")
+    <T> List<AuditLog<T>> findCurrent(@Param("type") String entityType, @Param("id") Long entityId);
+
+    @SuppressWarnings("squid:S1452")
+    @Query("select c.auditLog from AuditCurrent c"
+            + " where c.entityType in :types and c.number > :number order by c.number")
+    <T> Slice<AuditLog<? extends T>> findChanges(@Param("types") List<String> types,
+                                                 @Param("number") Long numberGreaterThan,
+                                                 Pageable pageable);
+
+    @SuppressWarnings("squid:S1452")
+    @Query("select c.auditLog from AuditCurrent c"
+            + " where c.entityType in :types and c.device <> :device and c.number > :number order by c.number")
+    <T> Slice<AuditLog<? extends T>> findChanges(@Param("types") List<String> types,
+                                                 @Param("device") String ignoreDevice,
+                                                 @Param("number") Long numberGreaterThan,
+                                                 Pageable pageable);
+
+    @SuppressWarnings("squid:S1452")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select c.auditLog from AuditCurrent c"
+            + " where c.entityType in :types and c.number > :number order by c.number")
+    <T> Stream<AuditLog<? extends T>> streamChanges(@Param("types") List<String> types,
+                                                    @Param("number") Long numberGreaterThan);
+
+    @SuppressWarnings("squid:S1452")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select c.auditLog from AuditCurrent c"
+            + " where c.entityType in :types and c.device <> :device and c.number > :number order by c.number")
+    <T> Stream<AuditLog<? extends T>> streamChanges(@Param("types") List<String> types,
+                                                    @Param("device") String ignoreDevice,
+                                                    @Param("number") Long numberGreaterThan);
+
+    @Query("select c.number as number, c.entityType as entityType, c.entityId as entityId,"
+            + " c.action as action, c.device as device, c.time as time from AuditCurrent c"
+            + " where c.entityType in :types and c.number > :number order by c.number")
+    Slice<AuditLogView> findChangeViews(@Param("types") List<String> types,
+                                        @Param("number") Long numberGreaterThan,
+                                        Pageable pageable);
+
+    @Query("select c.number as number, c.entityType as entityType, c.entityId as entityId,"
+            + " c.action as action, c.device as device, c.time as time from AuditCurrent c"
+            + " where c.entityType in :types and c.device <> :device and c.number > :number order by c.number")
+    Slice<AuditLogView> findChangeViews(@Param("types") List<String> types,
+                                        @Param("device") String ignoreDevice,
+                                        @Param("number") Long numberGreaterThan,
+                                        Pageable pageable);
+
+    /**
+     * The counterpart of {@code AuditLogRepository.findMaxNumber}, whose current flag is never set then.
+     */
+    @Query("select max(c.number) from AuditCurrent c where c.entityType = :entityType and c.tenant = :tenant")
+    Long findMaxNumber(@Param("entityType") String entityType, @Param("tenant") String tenant);
+
+    AuditCurrent save(AuditCurrent auditCurrent);
+
+    void delete(AuditCurrent auditCurrent);
+
+}
@@ -0,0 +1,171 @@
+package software.plusminus.audit.repository;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.exception.AuditException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+
+/**
+ * Caches the audit_entity_type table of the compact row format. The table is loaded at startup, and names
+ * or ids missing from the cache are read on the caller's connection, so a lookup while reading AuditLogs
+ * never waits for a second pooled connection. A name missing from the table is inserted on a connection
+ * of its own with auto-commit, so its id survives a rollback of the transaction writing the AuditLog.
+ * That happens once per entity type.
+ */
+@Component
+public class AuditEntityTypeDictionary implements SmartInitializingSingleton {
+
+    private static final String SELECT_ALL = "select id, name from audit_entity_type";
+    private static final String SELECT_ID = "select id from audit_entity_type where name = ?";
+    private static final String SELECT_NAME = "select name from audit_entity_type where id = ?";
+    private static final String INSERT = "insert into audit_entity_type (name) values (?)";
+
+    private final DataSource dataSource;
+    private final AuditProperties properties;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    public AuditEntityTypeDictionary(DataSource dataSource, AuditProperties properties) {
+        this.dataSource = dataSource;
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!properties.isCompactFormat()) {
+            return;
+        }
+        withConnection(connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(SELECT_ALL)) {
+                while (resultSet.next()) {
+                    put(resultSet.getInt(1), resultSet.getString(2));
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Reads a missing name on the connection bound to the current transaction, if any.
+     */
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id == null ? withConnection(connection -> load(connection, name)) : id;
+    }
+
+    public int id(String name, Connection connection) {
+        Integer id = ids.get(name);
+        return id == null ? apply(connection, c -> load(c, name)) : id;
+    }
+
+    /**
+     * Reads a missing id on the connection bound to the current transaction, if any.
+     */
+    public String name(int id) {
+        String name = names.get(id);
+        return name == null ? withConnection(connection -> read(connection, id)) : name;
+    }
+
+    public String name(int id, Connection connection) {
+        String name = names.get(id);
+        return name == null ? apply(connection, c -> read(c, id)) : name;
+    }
+
+    private String read(Connection connection, int id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_NAME)) {
+            statement.setInt(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new AuditException("Unknown entity type id " + id);
+                }
+                put(id, resultSet.getString(1));
+                return resultSet.getString(1);
+            }
+        }
+    }
+
+    private int load(Connection connection, String name) throws SQLException {
+        Integer id = select(connection, name);
+        if (id != null) {
+            return id;
+        }
+        try (Connection own = dataSource.getConnection()) {
+            own.setAutoCommit(true);
+            id = insert(own, name);
+        } catch (SQLException e) {
+            // another instance may have inserted the same name concurrently
+            id = select(connection, name);
+            if (id == null) {
+                throw new AuditException(e);
+            }
+        }
+        return id;
+    }
+
+    @Nullable
+    private Integer select(Connection connection, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_ID)) {
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                put(resultSet.getInt(1), name);
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    private int insert(Connection connection, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            statement.setString(1, name);
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new AuditException("Can't register entity type " + name);
+                }
+                put(keys.getInt(1), name);
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private void put(int id, String name) {
+        names.put(id, name);
+        ids.put(name, id);
+    }
+
+    private <T> T withConnection(SqlFunction<T> function) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return apply(connection, function);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static <T> T apply(Connection connection, SqlFunction<T> function) {
+        try {
+            return function.apply(connection);
+        } catch (SQLException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlFunction<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,272 @@
+package software.plusminus.audit.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.converter.AuditChangesConverter;
+import software.plusminus.audit.converter.UuidBinaryConverter;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.model.AuditCurrentId;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogKey;
+import software.plusminus.audit.routing.AuditTableRouting;
+import software.plusminus.crud.CrudAction;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+@RequiredArgsConstructor
+@Component
+public class AuditLogBatchWriter {
+
+    private static final String INSERT = "insert into audit_log"
+            + " (tenant, entity_type, entity_id, time, username, device, action, current, transaction_id, changes)"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String[] GENERATED_KEYS = {"number"};
+    private static final String UNMARK_CURRENT = "update audit_log set current = :notCurrent"
+            + " where entity_type = :entityType and entity_id in (:entityIds) and current = :current"
+            + " and (tenant = :tenant or (:tenant = '' and tenant is null))";
+
+    private static final String UPDATE_CURRENT = "update audit_current"
+            + " set number = ?, time = ?, username = ?, device = ?, action = ?"
+            + " where tenant = ? and entity_type = ? and entity_id = ? and number < ?";
+    private static final String EXISTING_CURRENT = "select entity_id from audit_current"
+            + " where tenant = :tenant and entity_type = :entityType and entity_id in (:entityIds)";
+    private static final String INSERT_CURRENT = "insert into audit_current"
+            + " (tenant, entity_type, entity_id, number, time, username, device, action)"
+            + " values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final AuditProperties properties;
+    private final AuditEntityTypeDictionary entityTypes;
+    private final AuditTableRouting tableRouting;
+
+    public void write(Collection<? extends AuditLog<?>> auditLogs) {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+        List<AuditLog<?>> ordered = new ArrayList<>(auditLogs);
+        if (properties.isCurrentTable()) {
+            ordered.forEach(auditLog -> auditLog.setCurrent(false));
+            insert(ordered);
+            refreshCurrentTable(ordered);
+            return;
+        }
+        markLatestAsCurrent(ordered);
+        unmarkCurrent(ordered);
+        insert(ordered);
+    }
+
+    /**
+     * Assigns the generated numbers, so that committed AuditLogs are announced with their numbers
+     * in every write mode.
+     */
+    private void insert(List<AuditLog<?>> auditLogs) {
+        String sql = tableRouting.route(INSERT);
+        jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql, GENERATED_KEYS)) {
+                for (int from = 0; from < auditLogs.size(); from += properties.getBatchSize()) {
+                    List<AuditLog<?>> chunk = auditLogs.subList(from,
+                            Math.min(from + properties.getBatchSize(), auditLogs.size()));
+                    for (AuditLog<?> auditLog : chunk) {
+                        setValues(statement, auditLog);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    setNumbers(statement, chunk);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void setNumbers(PreparedStatement statement, List<AuditLog<?>> auditLogs) throws SQLException {
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            for (AuditLog<?> auditLog : auditLogs) {
+                if (!keys.next()) {
+                    throw new AuditException("Can't read generated AuditLog numbers");
+                }
+                auditLog.setNumber(keys.getLong(1));
+            }
+        }
+    }
+
+    /**
+     * Updates the audit_current rows in place and inserts only the missing ones. Unlike delete and insert,
+     * a concurrent refresh of the same row waits for the row lock and updates the committed row.
+     * A row is only moved forward to the number generated for this batch, so a refresh committing later
+     * never overwrites a newer AuditLog. A row is missing only before the first AuditLog of an entity,
+     * which is written once.
+     */
+    private void refreshCurrentTable(List<AuditLog<?>> auditLogs) {
+        Map<AuditCurrentId, AuditLog<?>> latest = new LinkedHashMap<>();
+        auditLogs.forEach(auditLog -> latest.put(AuditCurrentId.of(auditLog.getTenant(),
+                auditLog.getEntityType(), auditLog.getEntityId()), auditLog));
+        List<Map.Entry<AuditCurrentId, AuditLog<?>>> rows = new ArrayList<>(latest.entrySet());
+        int[][] updated = jdbcTemplate.getJdbcTemplate().batchUpdate(tableRouting.route(UPDATE_CURRENT), rows,
+                properties.getBatchSize(), (statement, row) -> {
+                    statement.setLong(1, row.getValue().getNumber());
+                    int index = setCurrentValues(statement, 2, row.getValue());
+                    index = setCurrentId(statement, index, row.getKey());
+                    statement.setLong(index, row.getValue().getNumber());
+                });
+        // Not updated rows are either missing or newer; drivers may also report SUCCESS_NO_INFO
+        Map<AuditCurrentId, AuditLog<?>> unknown = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (updated[i / properties.getBatchSize()][i % properties.getBatchSize()] != 1) {
+                unknown.put(rows.get(i).getKey(), rows.get(i).getValue());
+            }
+        }
+        if (unknown.isEmpty()) {
+            return;
+        }
+        unknown.keySet().removeAll(existingCurrent(unknown.keySet()));
+        if (unknown.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(tableRouting.route(INSERT_CURRENT),
+                new ArrayList<>(unknown.entrySet()), properties.getBatchSize(), (statement, row) -> {
+                    int index = setCurrentId(statement, 1, row.getKey());
+                    statement.setLong(index, row.getValue().getNumber());
+                    setCurrentValues(statement, index + 1, row.getValue());
+                });
+    }
+
+    private Set<AuditCurrentId> existingCurrent(Collection<AuditCurrentId> ids) {
+        Map<String, Map<String, List<Long>>> idsByTenantAndType = new LinkedHashMap<>();
+        ids.forEach(id -> idsByTenantAndType
+                .computeIfAbsent(id.getTenant(), tenant -> new LinkedHashMap<>())
+                .computeIfAbsent(id.getEntityType(), type -> new ArrayList<>())
+                .add(id.getEntityId()));
+        Set<AuditCurrentId> existing = new HashSet<>();
+        idsByTenantAndType.forEach((tenant, idsByType) -> idsByType.forEach((entityType, entityIds) -> {
+            for (int from = 0; from < entityIds.size(); from += properties.getBatchSize()) {
+                List<Long> chunk = entityIds.subList(from,
+                        Math.min(from + properties.getBatchSize(), entityIds.size()));
+                jdbcTemplate.queryForList(tableRouting.route(EXISTING_CURRENT), new MapSqlParameterSource()
+                        .addValue("tenant", tenant)
+                        .addValue("entityType", entityType)
+                        .addValue("entityIds", chunk), Long.class)
+                        .forEach(entityId -> existing.add(AuditCurrentId.of(tenant, entityType, entityId)));
+            }
+        }));
+        return existing;
+    }
+
+    private static int setCurrentId(PreparedStatement statement, int index, AuditCurrentId id) throws SQLException {
+        statement.setString(index, id.getTenant());
+        statement.setString(index + 1, id.getEntityType());
+        statement.setLong(index + 2, id.getEntityId());
+        return index + 3;
+    }
+
+    private int setCurrentValues(PreparedStatement statement, int index, AuditLog<?> auditLog) throws SQLException {
+        setTime(statement, index, auditLog);
+        statement.setString(index + 1, auditLog.getUsername());
+        statement.setString(index + 2, auditLog.getDevice());
+        statement.setString(index + 3, auditLog.getAction().name());
+        return index + 4;
+    }
+
+    private void markLatestAsCurrent(List<AuditLog<?>> auditLogs) {
+        Set<AuditLogKey> seen = new HashSet<>();
+        for (int i = auditLogs.size() - 1; i >= 0; i--) {
+            AuditLog<?> auditLog = auditLogs.get(i);
+            auditLog.setCurrent(seen.add(new AuditLogKey(auditLog.getEntityType(), auditLog.getEntityId())));
+        }
+    }
+
+    /**
+     * Plain SQL bypasses the Hibernate tenantFilter and the statement inspector, so the tenant predicate
+     * is explicit and the tables are routed here.
+     */
+    private void unmarkCurrent(List<AuditLog<?>> auditLogs) {
+        Map<String, Map<String, Set<Long>>> idsByTenantAndType = new LinkedHashMap<>();
+        auditLogs.stream()
+                .filter(auditLog -> auditLog.getAction() != CrudAction.CREATE)
+                .forEach(auditLog -> idsByTenantAndType
+                        .computeIfAbsent(auditLog.getTenant() == null ? "" : auditLog.getTenant(),
+                                tenant -> new LinkedHashMap<>())
+                        .computeIfAbsent(auditLog.getEntityType(), type -> new LinkedHashSet<>())
+                        .add(auditLog.getEntityId()));
+        idsByTenantAndType.forEach((tenant, idsByType) -> idsByType.forEach((entityType, entityIds) -> {
+            List<Long> ids = new ArrayList<>(entityIds);
+            for (int from = 0; from < ids.size(); from += properties.getBatchSize()) {
+                List<Long> chunk = ids.subList(from, Math.min(from + properties.getBatchSize(), ids.size()));
+                jdbcTemplate.update(tableRouting.route(UNMARK_CURRENT), new MapSqlParameterSource()
+                        .addValue("notCurrent", false)
+                        .addValue("current", true)
+                        .addValue("entityType", entityType(entityType))
+                        .addValue("entityIds", chunk)
+                        .addValue("tenant", tenant));
+            }
+        }));
+    }
+
+    private void setValues(PreparedStatement statement, AuditLog<?> auditLog) throws SQLException {
+        statement.setString(1, auditLog.getTenant());
+        setEntityType(statement, 2, auditLog.getEntityType());
+        statement.setLong(3, auditLog.getEntityId());
+        setTime(statement, 4, auditLog);
+        statement.setString(5, auditLog.getUsername());
+        statement.setString(6, auditLog.getDevice());
+        statement.setString(7, auditLog.getAction().name());
+        statement.setBoolean(8, auditLog.isCurrent());
+        setTransactionId(statement, 9, auditLog.getTransactionId());
+        if (auditLog.getChanges() == null) {
+            statement.setNull(10, Types.VARBINARY);
+        } else {
+            statement.setBytes(10, AuditChangesConverter.encode(auditLog.getChanges()));
+        }
+    }
+
+    /**
+     * audit_log references the entity type by its dictionary id in the compact row format.
+     */
+    private Object entityType(String name) {
+        return properties.isCompactFormat() ? entityTypes.id(name) : name;
+    }
+
+    private void setEntityType(PreparedStatement statement, int index, String name) throws SQLException {
+        if (properties.isCompactFormat()) {
+            statement.setInt(index, entityTypes.id(name, statement.getConnection()));
+        } else {
+            statement.setString(index, name);
+        }
+    }
+
+    private void setTime(PreparedStatement statement, int index, AuditLog<?> auditLog) throws SQLException {
+        if (properties.isCompactFormat()) {
+            statement.setLong(index, auditLog.getTime().toInstant().toEpochMilli());
+        } else {
+            statement.setTimestamp(index, Timestamp.from(auditLog.getTime().toInstant()));
+        }
+    }
+
+    private void setTransactionId(PreparedStatement statement, int index, @Nullable UUID transactionId)
+            throws SQLException {
+        if (!properties.isCompactFormat()) {
+            statement.setString(index, transactionId == null ? null : transactionId.toString());
+        } else if (transactionId == null) {
+            statement.setNull(index, Types.BINARY);
+        } else {
+            statement.setBytes(index, UuidBinaryConverter.toBytes(transactionId));
+        }
+    }
+}
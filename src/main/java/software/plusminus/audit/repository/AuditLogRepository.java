@@ -2,19 +2,60 @@ package software.plusminus.audit.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogView;
 
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+/**
+ * The {@code ...CurrentTrue} methods rely on the {@code current} flag, which is not maintained with
+ * {@code plusminus.audit.current-table=true}. {@code AuditCurrentRepository} answers the same questions then.
+ */
 public interface AuditLogRepository extends Repository<AuditLog<?>, Long> {
 
+    String AS_OF_QUERY = "select a from AuditLog a where a.entityType in :types"
+            + " and (a.tenant = :tenant or (:tenant = '' and a.tenant is null))"
+            + " and a.number > :lastSeen and a.number <= :asOf"
+            + " and a.number = (select max(b.number) from AuditLog b where b.entityType = a.entityType"
+            + " and b.entityId = a.entityId and b.number <= :asOf)"
+            + " order by a.number";
+
     default <T> List<AuditLog<T>> findByEntityTypeAndEntityIdAndCurrentTrue(Class<T> entityType, Long entityId) {
         return findByEntityTypeAndEntityIdAndCurrentTrue(entityType.getName(), entityId);
     }
 
     <T> List<AuditLog<T>> findByEntityTypeAndEntityIdAndCurrentTrue(String entityType, Long entityId);
 
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    Slice<AuditLogView> findViewsByEntityTypeInAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+            List<String> types, Long numberGreaterThan, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    Slice<AuditLogView> findViewsByEntityTypeInAndDeviceIsNotAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+            List<String> types, String ignoreDevice, Long numberGreaterThan, Pageable pageable);
+
+    /**
+     * Bulk updates bypass the tenantFilter, so the tenant is a parameter. An empty tenant matches AuditLogs
+     * without tenant.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update AuditLog a set a.current = false "
+            + "where a.entityType = :entityType and a.entityId = :entityId and a.current = true"
+            + " and (a.tenant = :tenant or (:tenant = '' and a.tenant is null))")
+    int unmarkCurrent(@Param("entityType") String entityType, @Param("entityId") Long entityId,
+                      @Param("tenant") String tenant);
+
     @SuppressWarnings("squid:S1452")
     <T> Page<AuditLog<? extends T>> findByEntityTypeInAndNumberGreaterThanAndCurrentTrue(
             List<String> types, Long numberGreaterThan, Pageable pageable);
@@ -26,6 +67,51 @@ public interface AuditLogRepository extends Repository<AuditLog<?>, Long> {
     @SuppressWarnings("squid:S1452")
     <T> Page<AuditLog<? extends T>> findByCurrentTrue(Pageable pageable);
 
+    @SuppressWarnings("squid:S1452")
+    <T> Slice<AuditLog<? extends T>> findByEntityTypeInAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+            List<String> types, Long numberGreaterThan, Pageable pageable);
+
+    @SuppressWarnings("squid:S1452")
+    <T> Slice<AuditLog<? extends T>> findByEntityTypeInAndDeviceIsNotAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+            List<String> types, String ignoreDevice, Long numberGreaterThan, Pageable pageable);
+
+    @SuppressWarnings("squid:S1452")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    <T> Stream<AuditLog<? extends T>> streamByEntityTypeInAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+            List<String> types, Long numberGreaterThan);
+
+    @SuppressWarnings("squid:S1452")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    <T> Stream<AuditLog<? extends T>> streamByEntityTypeInAndDeviceIsNotAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+            List<String> types, String ignoreDevice, Long numberGreaterThan);
+
+    /**
+     * The latest AuditLog with {@code number <= asOf} of every entity, ordered by number and paged by keyset.
+     * Superseded AuditLogs removed by the archive job are not found.
+     */
+    @SuppressWarnings("squid:S1452")
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    @Query(AS_OF_QUERY)
+    <T> Slice<AuditLog<? extends T>> findAsOf(@Param("types") List<String> types, @Param("tenant") String tenant,
+                                              @Param("asOf") Long asOf, @Param("lastSeen") Long lastSeen,
+                                              Pageable pageable);
+
+    @SuppressWarnings("squid:S1452")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query(AS_OF_QUERY)
+    <T> Stream<AuditLog<? extends T>> streamAsOf(@Param("types") List<String> types, @Param("tenant") String tenant,
+                                                 @Param("asOf") Long asOf, @Param("lastSeen") Long lastSeen);
+
+    /**
+     * The latest AuditLog of every entity is current, so the maximum is read from the current rows only.
+     */
+    @Query("select max(a.number) from AuditLog a where a.entityType = :entityType"
+            + " and (a.tenant = :tenant or (:tenant = '' and a.tenant is null)) and a.current = true")
+    Long findMaxNumber(@Param("entityType") String entityType, @Param("tenant") String tenant);
+
+    @Query("select max(a.number) from AuditLog a")
+    Long findMaxNumber();
+
     <T> AuditLog<T> save(AuditLog<T> auditLog);
 
     <T> AuditLog<T> delete(AuditLog<T> auditLog);
@@ -0,0 +1,17 @@
+package software.plusminus.audit.routing;
+
+import lombok.AllArgsConstructor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+@AllArgsConstructor
+public class AuditStatementInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient AuditTableRouting routing;
+
+    @Override
+    public String inspect(String sql) {
+        return routing.route(sql);
+    }
+}
@@ -0,0 +1,53 @@
+package software.plusminus.audit.routing;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.exception.AuditException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+
+/**
+ * Creates routed audit tables on first use. DDL runs on its own connection, because some databases
+ * commit the current transaction on DDL. Each routed {@code audit_log} table generates its own numbers,
+ * so numbers are unique and ordered only within one tenant.
+ */
+@RequiredArgsConstructor
+@Component
+public class AuditTableProvisioner {
+
+    private final DataSource dataSource;
+    private final AuditProperties properties;
+    private final Set<String> provisioned = ConcurrentHashMap.newKeySet();
+
+    public void ensure(String table, String template, @Nullable String schema) {
+        if (table.equals(template) || provisioned.contains(table)) {
+            return;
+        }
+        synchronized (provisioned) {
+            if (provisioned.contains(table)) {
+                return;
+            }
+            AuditProperties.Routing routing = properties.getRouting();
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                connection.setAutoCommit(true);
+                if (schema != null) {
+                    statement.execute(routing.getCreateSchemaSql().replace("{schema}", schema));
+                }
+                statement.execute(routing.getCreateTableSql()
+                        .replace("{table}", table)
+                        .replace("{template}", template));
+            } catch (SQLException e) {
+                throw new AuditException(e);
+            }
+            provisioned.add(table);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package software.plusminus.audit.routing;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Chooses the physical audit tables of a tenant. A custom bean replaces {@link TenantAuditTableRouter}.
+ */
+public interface AuditTableRouter {
+
+    /**
+     * Returns the physical name of {@code audit_log} or {@code audit_current} for the tenant,
+     * the table itself if the tenant stays in the shared table.
+     */
+    String route(String table, @Nullable String tenant);
+
+    /**
+     * The schema created before the tables of the tenant, null if the tables are in an existing schema.
+     */
+    @Nullable
+    default String schema(@Nullable String tenant) {
+        return null;
+    }
+}
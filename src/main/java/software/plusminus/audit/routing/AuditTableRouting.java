@@ -0,0 +1,150 @@
+package software.plusminus.audit.routing;
+
+import lombok.Data;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.config.AuditRoutingMode;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.context.Context;
+import software.plusminus.transaction.context.TransactionContext;
+
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites audit table names of SQL statements to the tables of the routed tenant. The tenant is taken from
+ * {@link #withTenant}, then from the AuditLogs of the current transaction, then from the tenant context.
+ * Tables are provisioned by {@link #bind}, {@link #withTenant} and {@link #provision}, never while
+ * a statement is prepared, because provisioning takes a connection of its own.
+ */
+@Component
+public class AuditTableRouting {
+
+    static final String AUDIT_LOG = "audit_log";
+    static final String AUDIT_CURRENT = "audit_current";
+    private static final Pattern TABLES = Pattern.compile("\\b(" + AUDIT_LOG + '|' + AUDIT_CURRENT + ")\\b");
+
+    private final AuditTableRouter router;
+    private final AuditTableProvisioner provisioner;
+    private final Context<String> tenantContext;
+    private final boolean enabled;
+    private final ThreadLocal<Bound> override = new ThreadLocal<>();
+    private final TransactionContext<Bound> transactionTenant = TransactionContext.of(Bound::new);
+
+    public AuditTableRouting(AuditTableRouter router, AuditTableProvisioner provisioner,
+                             Context<String> tenantContext, AuditProperties properties) {
+        this.router = router;
+        this.provisioner = provisioner;
+        this.tenantContext = tenantContext;
+        this.enabled = properties.getRouting().getMode() != AuditRoutingMode.NONE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Routes the statements of the current transaction to the tables of the AuditLog tenant.
+     * All AuditLogs of one transaction must be routed to the same table.
+     */
+    public void bind(@Nullable String tenant) {
+        if (!enabled || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        Bound bound = transactionTenant.get();
+        if (!bound.isSet()) {
+            provision(tenant);
+            bound.set(tenant);
+        } else if (!router.route(AUDIT_LOG, bound.getTenant()).equals(router.route(AUDIT_LOG, tenant))) {
+            throw new AuditException("AuditLogs of tenants " + bound.getTenant() + " and " + tenant
+                    + " are routed to different tables in one transaction");
+        }
+    }
+
+    public <T> T withTenant(@Nullable String tenant, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        provision(tenant);
+        Bound previous = override.get();
+        Bound bound = new Bound();
+        bound.set(tenant);
+        override.set(bound);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                override.remove();
+            } else {
+                override.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Creates the tables of the current tenant if they are missing. Statements routed by the tenant context
+     * alone need it before the first statement of the tenant.
+     */
+    public void provision() {
+        if (enabled) {
+            provision(currentTenant());
+        }
+    }
+
+    public String route(String sql) {
+        if (!enabled || !sql.contains(AUDIT_LOG) && !sql.contains(AUDIT_CURRENT)) {
+            return sql;
+        }
+        String tenant = currentTenant();
+        String auditLog = router.route(AUDIT_LOG, tenant);
+        String auditCurrent = router.route(AUDIT_CURRENT, tenant);
+        if (auditLog.equals(AUDIT_LOG) && auditCurrent.equals(AUDIT_CURRENT)) {
+            return sql;
+        }
+        Matcher matcher = TABLES.matcher(sql);
+        StringBuffer routed = new StringBuffer(sql.length() + 32);
+        while (matcher.find()) {
+            matcher.appendReplacement(routed, Matcher.quoteReplacement(
+                    matcher.group(1).equals(AUDIT_LOG) ? auditLog : auditCurrent));
+        }
+        matcher.appendTail(routed);
+        return routed.toString();
+    }
+
+    private void provision(@Nullable String tenant) {
+        String schema = router.schema(tenant);
+        provisioner.ensure(router.route(AUDIT_LOG, tenant), AUDIT_LOG, schema);
+        provisioner.ensure(router.route(AUDIT_CURRENT, tenant), AUDIT_CURRENT, schema);
+    }
+
+    @Nullable
+    private String currentTenant() {
+        Bound bound = override.get();
+        if (bound != null) {
+            return bound.getTenant();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            bound = transactionTenant.get();
+            if (bound.isSet()) {
+                return bound.getTenant();
+            }
+        }
+        return tenantContext.get();
+    }
+
+    @Data
+    private static class Bound {
+
+        private boolean set;
+        @Nullable
+        private String tenant;
+
+        void set(@Nullable String tenant) {
+            this.set = true;
+            this.tenant = tenant;
+        }
+    }
+}
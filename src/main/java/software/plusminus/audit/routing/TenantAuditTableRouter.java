@@ -0,0 +1,50 @@
+package software.plusminus.audit.routing;
+
+import org.springframework.lang.Nullable;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.config.AuditRoutingMode;
+
+import java.util.Locale;
+
+/**
+ * Routes by {@code plusminus.audit.routing.mode}. AuditLogs without tenant stay in the shared tables.
+ * Tenant names are lower-cased and every character other than a letter, a digit or underscore becomes underscore.
+ */
+public class TenantAuditTableRouter implements AuditTableRouter {
+
+    private final AuditRoutingMode mode;
+    private final String schemaPrefix;
+
+    public TenantAuditTableRouter(AuditProperties properties) {
+        this.mode = properties.getRouting().getMode();
+        this.schemaPrefix = properties.getRouting().getSchemaPrefix();
+    }
+
+    @Override
+    public String route(String table, @Nullable String tenant) {
+        if (mode == AuditRoutingMode.NONE || tenant == null || tenant.isEmpty()) {
+            return table;
+        }
+        if (mode == AuditRoutingMode.SCHEMA) {
+            return schemaPrefix + identifier(tenant) + '.' + table;
+        }
+        return table + '_' + identifier(tenant);
+    }
+
+    @Nullable
+    @Override
+    public String schema(@Nullable String tenant) {
+        if (mode != AuditRoutingMode.SCHEMA || tenant == null || tenant.isEmpty()) {
+            return null;
+        }
+        return schemaPrefix + identifier(tenant);
+    }
+
+    private static String identifier(String tenant) {
+        StringBuilder identifier = new StringBuilder(tenant.length());
+        for (char c : tenant.toLowerCase(Locale.ROOT).toCharArray()) {
+            identifier.append(c >= 'a' && c <= 'z' || c >= '0' && c <= '9' ? c : '_');
+        }
+        return identifier.toString();
+    }
+}
@@ -0,0 +1,154 @@
+package software.plusminus.audit.service;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.Type;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import software.plusminus.audit.model.AuditChange;
+import software.plusminus.audit.model.AuditLogKey;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.transaction.context.TransactionContext;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Compares fields of an entity with the state loaded by the current persistence context.
+ * Flushing makes the loaded state equal to the entity, so changes flushed before {@link #detect} is called
+ * are captured by a pre-update listener and kept until the end of the transaction.
+ */
+@RequiredArgsConstructor
+@Component
+public class AuditChangeDetector implements PreUpdateEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient EntityManager entityManager;
+    private final transient EntityManagerFactory entityManagerFactory;
+    private final transient AuditMetadataRegistry registry;
+    private final transient TransactionContext<Map<AuditLogKey, Map<String, AuditChange>>> flushedChanges =
+            TransactionContext.of(HashMap::new);
+
+    @PostConstruct
+    public void register() {
+        entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .appendListeners(EventType.PRE_UPDATE, this);
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        AuditMetadata metadata = registry.get(event.getEntity());
+        if (metadata.isCapturingChanges() && event.getOldState() != null && event.getId() instanceof Number
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            Object[] state = event.getState();
+            Map<String, AuditChange> changes = diff(metadata, event.getPersister(), event.getOldState(),
+                    (field, index) -> state[index]);
+            AuditLogKey key = new AuditLogKey(event.getEntity().getClass().getName(),
+                    ((Number) event.getId()).longValue());
+            flushedChanges.get().merge(key, changes, AuditChangeDetector::merge);
+        }
+        return false;
+    }
+
+    /**
+     * Returns null if changes are not captured for the entity or the action, or if the old values are unknown.
+     */
+    @Nullable
+    public Map<String, AuditChange> detect(Object entity, CrudAction action) {
+        AuditMetadata metadata = registry.get(entity);
+        if (!metadata.isCapturingChanges()
+                || action != CrudAction.CREATE && action != CrudAction.UPDATE && action != CrudAction.PATCH) {
+            return null;
+        }
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getEntityPersister(null, entity);
+        BiFunction<String, Integer, Object> newValue = (field, index) -> metadata.readField(field, entity);
+        if (action == CrudAction.CREATE) {
+            return diff(metadata, persister, null, newValue);
+        }
+        Serializable id = persister.getIdentifier(entity, session);
+        Map<String, AuditChange> flushed = id instanceof Number
+                ? flushedChanges.get().remove(new AuditLogKey(entity.getClass().getName(), ((Number) id).longValue()))
+                : null;
+        Object[] loadedState = loadedState(session, persister, entity, id);
+        if (loadedState == null) {
+            // Old values of a detached entity without a managed copy are unknown without another select
+            return flushed;
+        }
+        return merge(flushed, diff(metadata, persister, loadedState, newValue));
+    }
+
+    /**
+     * Keeps the old value of fields changed earlier in the same transaction.
+     */
+    public static Map<String, AuditChange> merge(@Nullable Map<String, AuditChange> previous,
+                                                 Map<String, AuditChange> changes) {
+        if (previous == null) {
+            return changes;
+        }
+        Map<String, AuditChange> merged = new LinkedHashMap<>(previous);
+        changes.forEach((field, change) -> {
+            AuditChange first = previous.get(field);
+            Object oldValue = first == null ? change.getOldValue() : first.getOldValue();
+            if (Objects.equals(oldValue, change.getNewValue())) {
+                merged.remove(field);
+            } else {
+                merged.put(field, new AuditChange(oldValue, change.getNewValue()));
+            }
+        });
+        return merged;
+    }
+
+    private static Map<String, AuditChange> diff(AuditMetadata metadata, EntityPersister persister,
+                                                 @Nullable Object[] oldState,
+                                                 BiFunction<String, Integer, Object> newValue) {
+        Type[] types = persister.getPropertyTypes();
+        Map<String, AuditChange> changes = new LinkedHashMap<>();
+        for (String field : metadata.getChangeFields()) {
+            Integer index = persister.getEntityMetamodel().getPropertyIndexOrNull(field);
+            if (index == null || types[index].isAssociationType()) {
+                continue;
+            }
+            Object oldValue = oldState == null ? null : oldState[index];
+            Object value = newValue.apply(field, index);
+            if (!types[index].isEqual(oldValue, value)) {
+                changes.put(field, new AuditChange(oldValue, value));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * A detached entity is compared with its managed copy, e.g. the one loaded by merge.
+     */
+    @Nullable
+    private Object[] loadedState(SessionImplementor session, EntityPersister persister, Object entity,
+                                 @Nullable Serializable id) {
+        PersistenceContext persistenceContext = session.getPersistenceContext();
+        EntityEntry entry = persistenceContext.getEntry(entity);
+        if (entry == null && id != null) {
+            Object managed = persistenceContext.getEntity(session.generateEntityKey(id, persister));
+            entry = managed == null ? null : persistenceContext.getEntry(managed);
+        }
+        return entry == null ? null : entry.getLoadedState();
+    }
+}
@@ -0,0 +1,39 @@
+package software.plusminus.audit.service;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.event.AuditLogsCommittedEvent;
+import software.plusminus.audit.model.AuditLog;
+
+import java.util.List;
+
+/**
+ * Announces AuditLogs once they are committed to the database with their numbers assigned:
+ * raises the watermarks and, only if SSE is enabled, publishes {@link AuditLogsCommittedEvent}.
+ */
+@Component
+public class AuditCommitPublisher {
+
+    private final AuditWatermarkService watermarkService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean publishEvents;
+
+    public AuditCommitPublisher(AuditWatermarkService watermarkService,
+                                ApplicationEventPublisher eventPublisher,
+                                AuditProperties properties) {
+        this.watermarkService = watermarkService;
+        this.eventPublisher = eventPublisher;
+        this.publishEvents = properties.getSse().isEnabled();
+    }
+
+    public void committed(List<AuditLog<?>> auditLogs) {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+        watermarkService.onCommitted(auditLogs);
+        if (publishEvents) {
+            eventPublisher.publishEvent(new AuditLogsCommittedEvent(auditLogs));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package software.plusminus.audit.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import software.plusminus.audit.model.AuditCurrent;
+import software.plusminus.audit.model.AuditCurrentId;
+import software.plusminus.audit.model.AuditLog;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+@RequiredArgsConstructor
+@Component
+public class AuditCurrentUpdater {
+
+    private final EntityManager entityManager;
+
+    /**
+     * The row is locked until the transaction ends, and it is only moved forward, so a transaction
+     * committing later with an older AuditLog does not overwrite a newer one.
+     */
+    public void update(AuditLog<?> auditLog) {
+        AuditCurrentId id = AuditCurrentId.of(auditLog.getTenant(), auditLog.getEntityType(), auditLog.getEntityId());
+        AuditCurrent current = entityManager.find(AuditCurrent.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (current != null && current.getNumber() > auditLog.getNumber()) {
+            return;
+        }
+        if (current == null) {
+            current = new AuditCurrent();
+            current.setTenant(id.getTenant());
+            current.setEntityType(id.getEntityType());
+            current.setEntityId(id.getEntityId());
+            entityManager.persist(current);
+        }
+        current.setNumber(auditLog.getNumber());
+        current.setTime(auditLog.getTime());
+        current.setUsername(auditLog.getUsername());
+        current.setDevice(auditLog.getDevice());
+        current.setAction(auditLog.getAction());
+    }
+
+    public void remove(AuditLog<?> auditLog) {
+        AuditCurrent current = entityManager.find(AuditCurrent.class,
+                AuditCurrentId.of(auditLog.getTenant(), auditLog.getEntityType(), auditLog.getEntityId()));
+        if (current != null) {
+            entityManager.remove(current);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package software.plusminus.audit.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.metrics.AuditMetrics;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogView;
+import software.plusminus.audit.repository.AuditCurrentRepository;
+import software.plusminus.audit.repository.AuditLogRepository;
+import software.plusminus.audit.routing.AuditTableRouting;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+
+@RequiredArgsConstructor
+@Service
+public class AuditFeedService {
+
+    private final AuditLogRepository repository;
+    private final AuditCurrentRepository currentRepository;
+    private final AuditProperties properties;
+    private final EntityManager entityManager;
+    private final AuditLogEntityLoader entityLoader;
+    private final AuditMetrics metrics;
+    private final AuditVisibilityTracker visibilityTracker;
+    private final AuditTableRouting tableRouting;
+
+    /**
+     * Changes are capped at the visibility watermark if {@code plusminus.audit.visibility-watermark} is enabled,
+     * so a change committed later never gets a number below the last seen one.
+     */
+    @Transactional(readOnly = true)
+    @SuppressWarnings("squid:S1452")
+    public <T> Slice<AuditLog<? extends T>> findChanges(List<String> types, @Nullable String ignoreDevice,
+                                                       long lastSeen, int limit) {
+        long safe = visibilityTracker.safeWatermark();
+        return timed("findChanges", () -> capped(queryChanges(types, ignoreDevice, lastSeen, limit),
+                AuditLog::getNumber, safe));
+    }
+
+    @SuppressWarnings("squid:S1452")
+    private <T> Slice<AuditLog<? extends T>> queryChanges(List<String> types, @Nullable String ignoreDevice,
+                                                         long lastSeen, int limit) {
+        Pageable pageable = PageRequest.of(0, limit);
+        if (properties.isCurrentTable()) {
+            return ignoreDevice == null
+                    ? currentRepository.findChanges(types, lastSeen, pageable)
+                    : currentRepository.findChanges(types, ignoreDevice, lastSeen, pageable);
+        }
+        if (ignoreDevice == null) {
+            return repository.findByEntityTypeInAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+                    types, lastSeen, pageable);
+        }
+        return repository.findByEntityTypeInAndDeviceIsNotAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+                types, ignoreDevice, lastSeen, pageable);
+    }
+
+    /**
+     * Same as {@link #findChanges} but with entities of the whole slice loaded by one query per entity type.
+     */
+    @Transactional(readOnly = true)
+    @SuppressWarnings("squid:S1452")
+    public <T> Slice<AuditLog<? extends T>> findChangesWithEntities(List<String> types, @Nullable String ignoreDevice,
+                                                                   long lastSeen, int limit) {
+        Slice<AuditLog<? extends T>> changes = findChanges(types, ignoreDevice, lastSeen, limit);
+        entityLoader.load(changes.getContent());
+        return changes;
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<AuditLogView> findChangeViews(List<String> types, @Nullable String ignoreDevice,
+                                              long lastSeen, int limit) {
+        long safe = visibilityTracker.safeWatermark();
+        return timed("findChangeViews", () -> capped(queryChangeViews(types, ignoreDevice, lastSeen, limit),
+                AuditLogView::getNumber, safe));
+    }
+
+    private Slice<AuditLogView> queryChangeViews(List<String> types, @Nullable String ignoreDevice,
+                                                long lastSeen, int limit) {
+        Pageable pageable = PageRequest.of(0, limit);
+        if (properties.isCurrentTable()) {
+            return ignoreDevice == null
+                    ? currentRepository.findChangeViews(types, lastSeen, pageable)
+                    : currentRepository.findChangeViews(types, ignoreDevice, lastSeen, pageable);
+        }
+        if (ignoreDevice == null) {
+            return repository.findViewsByEntityTypeInAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+                    types, lastSeen, pageable);
+        }
+        return repository.findViewsByEntityTypeInAndDeviceIsNotAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+                types, ignoreDevice, lastSeen, pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamChanges(List<String> types, @Nullable String ignoreDevice, long lastSeen,
+                              Consumer<AuditLog<?>> consumer) {
+        long safe = visibilityTracker.safeWatermark();
+        consume("streamChanges", () -> streamChanges(types, ignoreDevice, lastSeen), safe, consumer);
+    }
+
+    /**
+     * State of the feed as of {@code asOf}: the latest AuditLog with number up to it of every entity.
+     * A null tenant selects AuditLogs without tenant.
+     */
+    @Transactional(readOnly = true)
+    @SuppressWarnings("squid:S1452")
+    public <T> Slice<AuditLog<? extends T>> findAsOf(List<String> types, @Nullable String tenant, long asOf,
+                                                    long lastSeen, int limit) {
+        return timed("findAsOf", () -> repository.findAsOf(types, tenantParameter(tenant), asOf, lastSeen,
+                PageRequest.of(0, limit)));
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAsOf(List<String> types, @Nullable String tenant, long asOf,
+                           Consumer<AuditLog<?>> consumer) {
+        consume("streamAsOf", () -> repository.streamAsOf(types, tenantParameter(tenant), asOf, 0L),
+                Long.MAX_VALUE, consumer);
+    }
+
+    private void consume(String query, Supplier<Stream<AuditLog<?>>> stream, long safe,
+                         Consumer<AuditLog<?>> consumer) {
+        tableRouting.provision();
+        long start = System.nanoTime();
+        int rows = 0;
+        try (Stream<AuditLog<?>> changes = stream.get()) {
+            Iterator<AuditLog<?>> iterator = changes.iterator();
+            while (iterator.hasNext()) {
+                AuditLog<?> auditLog = iterator.next();
+                if (auditLog.getNumber() > safe) {
+                    break;
+                }
+                consumer.accept(auditLog);
+                entityManager.detach(auditLog);
+                rows++;
+            }
+        } finally {
+            metrics.feedQueried(query, System.nanoTime() - start, rows);
+        }
+    }
+
+    /**
+     * The slice is ordered by number, so the rows above the watermark are its tail.
+     */
+    private static <T> Slice<T> capped(Slice<T> slice, ToLongFunction<T> number, long safe) {
+        List<T> content = slice.getContent();
+        int visible = content.size();
+        while (visible > 0 && number.applyAsLong(content.get(visible - 1)) > safe) {
+            visible--;
+        }
+        if (visible == content.size()) {
+            return slice;
+        }
+        return new SliceImpl<>(new ArrayList<>(content.subList(0, visible)), slice.getPageable(), false);
+    }
+
+    private static String tenantParameter(@Nullable String tenant) {
+        return tenant == null ? "" : tenant;
+    }
+
+    private <T> Slice<T> timed(String query, Supplier<Slice<T>> slice) {
+        tableRouting.provision();
+        long start = System.nanoTime();
+        Slice<T> result = slice.get();
+        metrics.feedQueried(query, System.nanoTime() - start, result.getNumberOfElements());
+        return result;
+    }
+
+    private Stream<AuditLog<?>> streamChanges(List<String> types, @Nullable String ignoreDevice, long lastSeen) {
+        if (properties.isCurrentTable()) {
+            return ignoreDevice == null
+                    ? currentRepository.streamChanges(types, lastSeen)
+                    : currentRepository.streamChanges(types, ignoreDevice, lastSeen);
+        }
+        if (ignoreDevice == null) {
+            return repository.streamByEntityTypeInAndNumberGreaterThanAndCurrentTrueOrderByNumber(types, lastSeen);
+        }
+        return repository.streamByEntityTypeInAndDeviceIsNotAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+                types, ignoreDevice, lastSeen);
+    }
+}
@@ -0,0 +1,99 @@
+package software.plusminus.audit.service;
+
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.ClassUtils;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.model.AuditLog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+
+/**
+ * Loads the entities of a page of AuditLogs with one {@code in} query per entity type instead of one query per
+ * AuditLog. Entities are loaded in the caller's EntityManager, so they stay attached, their lazy associations
+ * can be initialized and the caller's tenantFilter applies.
+ */
+@Component
+public class AuditLogEntityLoader {
+
+    private final EntityManager entityManager;
+    private final AuditProperties properties;
+
+    public AuditLogEntityLoader(EntityManager entityManager, AuditProperties properties) {
+        this.entityManager = entityManager;
+        this.properties = properties;
+    }
+
+    @Transactional(readOnly = true)
+    public <L extends AuditLog<?>> List<L> load(List<L> auditLogs) {
+        auditLogs.stream()
+                .collect(Collectors.groupingBy(AuditLog::getEntityType, LinkedHashMap::new, Collectors.toList()))
+                .forEach((type, logs) -> wire(logs, load(type, ids(logs))));
+        return auditLogs;
+    }
+
+    private Map<Long, Object> load(String type, Set<Long> ids) {
+        EntityType<?> entityType = findEntityType(type);
+        if (entityType == null) {
+            return new HashMap<>();
+        }
+        String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        String query = "select e from " + entityType.getName() + " e where e." + idName + " in :ids";
+        List<Long> idList = new ArrayList<>(ids);
+        Map<Long, Object> entities = new HashMap<>();
+        for (int from = 0; from < idList.size(); from += properties.getBatchSize()) {
+            List<Long> chunk = idList.subList(from, Math.min(from + properties.getBatchSize(), idList.size()));
+            entityManager.createQuery(query)
+                    .setParameter("ids", chunk)
+                    .getResultList()
+                    .forEach(entity -> entities.put(identifier(entity), entity));
+        }
+        return entities;
+    }
+
+    @Nullable
+    private EntityType<?> findEntityType(String type) {
+        try {
+            Class<?> entityClass = ClassUtils.forName(type, ClassUtils.getDefaultClassLoader());
+            return entityManager.getMetamodel().entity(entityClass);
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private Long identifier(Object entity) {
+        Object id = entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+        if (id instanceof Number) {
+            return ((Number) id).longValue();
+        }
+        throw new AuditException("Unsupported id type of entity " + entity.getClass().getName());
+    }
+
+    private static Set<Long> ids(Collection<? extends AuditLog<?>> auditLogs) {
+        return auditLogs.stream()
+                .map(AuditLog::getEntityId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void wire(List<? extends AuditLog<?>> auditLogs, Map<Long, Object> entities) {
+        auditLogs.forEach(auditLog -> {
+            Object entity = entities.get(auditLog.getEntityId());
+            if (entity != null) {
+                ((AuditLog<Object>) auditLog).setEntity(entity);
+            }
+        });
+    }
+}
@@ -2,9 +2,7 @@ package software.plusminus.audit.service;
 
 import lombok.AllArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
-import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.stereotype.Component;
-import software.plusminus.audit.annotation.Auditable;
 import software.plusminus.crud.CrudAction;
 import software.plusminus.crud.listener.CrudJoinpoint;
 import software.plusminus.crud.listener.WriteListener;
@@ -16,6 +14,7 @@ import software.plusminus.listener.Joinpoint;
 public class AuditLogListener implements WriteListener<Object> {
 
     private AuditLogService service;
+    private AuditMetadataRegistry registry;
 
     @Override
     public Joinpoint joinpoint() {
@@ -24,7 +23,7 @@ public class AuditLogListener implements WriteListener<Object> {
 
     @Override
     public boolean supports(Object object) {
-        return AnnotationUtils.findAnnotation(object.getClass(), Auditable.class) != null;
+        return registry.get(object).isAuditable();
     }
 
     @Override
@@ -1,87 +1,160 @@
 package software.plusminus.audit.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import software.plusminus.audit.async.AsyncAuditLogWriter;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.config.AuditWriteMode;
 import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.metrics.AuditMetrics;
+import software.plusminus.audit.model.AuditChange;
 import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogKey;
+import software.plusminus.audit.repository.AuditLogBatchWriter;
 import software.plusminus.audit.repository.AuditLogRepository;
+import software.plusminus.audit.routing.AuditTableRouting;
 import software.plusminus.audit.util.AuditLogUtil;
-import software.plusminus.context.Context;
 import software.plusminus.crud.CrudAction;
-import software.plusminus.security.Security;
 import software.plusminus.transaction.context.TransactionContext;
-import software.plusminus.util.AnnotationUtils;
-import software.plusminus.util.EntityUtils;
-import software.plusminus.util.FieldUtils;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Service
 public class AuditLogService {
 
-    private final Context<Security> securityContext;
-    private final DeviceContext deviceContext;
-    private final Context<String> tenantContext;
+    private final AuditPrincipalProvider principalProvider;
     private final TransactionIdProvider transactionIdProvider;
     private final AuditLogRepository repository;
-    private TransactionContext<List<AuditLog<?>>> currentAuditLogs = TransactionContext.of(ArrayList::new);
+    private final AuditMetadataRegistry registry;
+    private final AuditProperties properties;
+    private final AuditLogBatchWriter batchWriter;
+    private final ObjectProvider<AsyncAuditLogWriter> asyncWriter;
+    private final AuditCurrentUpdater currentUpdater;
+    private final AuditMetrics metrics;
+    private final AuditChangeDetector changeDetector;
+    private final AuditCommitPublisher commitPublisher;
+    private final AuditVisibilityTracker visibilityTracker;
+    private final AuditTableRouting tableRouting;
+    private TransactionContext<TransactionAuditLogs> currentAuditLogs =
+            TransactionContext.of(TransactionAuditLogs::new);
 
+    /**
+     * Returns null and writes nothing for an UPDATE or PATCH of an entity with {@code @Auditable(changes = true)}
+     * none of whose tracked fields changed, including changes already flushed in this transaction.
+     * The AuditLog current before the call stays current then.
+     */
+    @Nullable
     @Transactional(propagation = Propagation.MANDATORY)
     public <T> AuditLog<T> log(T entity, CrudAction action) {
+        return doLog(entity, action, transactionIdProvider.currentTransactionId(), false, System.nanoTime());
+    }
+
+    /**
+     * Logs all entities with the same action, applying the same coalescing rules as {@link #log}.
+     * The transaction id is resolved once. New AuditLogs are written by one JDBC batch
+     * before the transaction commits, so they are not visible to queries in the same transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<AuditLog<?>> logAll(Collection<?> entities, CrudAction action) {
+        UUID transactionId = transactionIdProvider.currentTransactionId();
+        List<AuditLog<?>> auditLogs = new ArrayList<>(entities.size());
+        for (Object entity : entities) {
+            AuditLog<?> auditLog = doLog(entity, action, transactionId, true, System.nanoTime());
+            if (auditLog != null) {
+                auditLogs.add(auditLog);
+            }
+        }
+        return auditLogs;
+    }
+
+    @Nullable
+    private <T> AuditLog<T> doLog(T entity, CrudAction action, @Nullable UUID transactionId, boolean deferred,
+                                  long start) {
         String entityType = entity.getClass().getName();
         Long entityId = getEntityId(entity, action);
-        UUID transactionId = transactionIdProvider.currentTransactionId();
-        AuditLog<T> presentInTheContext = findInContext(entityType, entityId, transactionId, action);
+        AuditLogKey key = new AuditLogKey(entityType, entityId);
+        AuditLog<T> presentInTheContext = findInContext(key, entity, transactionId);
+        Map<String, AuditChange> changes = changeDetector.detect(entity, action);
         if (presentInTheContext != null) {
-            processPresentAuditLog(presentInTheContext, action);
+            if (changes != null) {
+                presentInTheContext.setChanges(AuditChangeDetector.merge(presentInTheContext.getChanges(), changes));
+            }
+            processPresentAuditLog(key, presentInTheContext, action);
             return presentInTheContext;
         }
-        unmarkCurrentAuditLogForEntity(entityType, entityId, action);
-        AuditLog<T> auditLog = prepareAuditLog(entity, action, transactionId);
-        currentAuditLogs.get().add(auditLog);
-        repository.save(auditLog);
+        if (changes != null && changes.isEmpty() && action != CrudAction.CREATE) {
+            return null;
+        }
+        AuditLog<T> auditLog = prepareAuditLog(entity, key, action, transactionId);
+        auditLog.setChanges(changes);
+        tableRouting.bind(auditLog.getTenant());
+        currentAuditLogs.get().add(key, auditLog);
+        currentAuditLogs.get().registerSynchronization(AuditLogsSynchronization::new);
+        if (!deferred && properties.getWriteMode() == AuditWriteMode.IMMEDIATE) {
+            unmarkCurrentAuditLogForEntity(entityType, entityId, auditLog.getTenant(), action);
+            persist(auditLog);
+        }
+        metrics.logged(entityType, action, System.nanoTime() - start);
         return auditLog;
     }
 
-    private <T> AuditLog<T> prepareAuditLog(T entity, CrudAction action, UUID transactionId) {
+    private <T> AuditLog<T> prepareAuditLog(T entity, AuditLogKey key, CrudAction action,
+                                            @Nullable UUID transactionId) {
+        AuditPrincipal principal = currentPrincipal();
         AuditLog<T> auditLog = new AuditLog<>();
         auditLog.setEntity(entity);
+        auditLog.setEntityType(key.getEntityType());
+        auditLog.setEntityId(key.getEntityId());
         auditLog.setTime(ZonedDateTime.now());
-        auditLog.setCurrent(true);
-        auditLog.setUsername(securityContext.get().getUsername());
-        auditLog.setDevice(deviceContext.currentDevice());
+        auditLog.setCurrent(!properties.isCurrentTable());
+        auditLog.setUsername(principal.getUsername());
+        auditLog.setDevice(principal.getDevice());
         auditLog.setTransactionId(transactionId);
-        if (auditLog.getDevice() == null) {
-            auditLog.setDevice("");
-        }
-        auditLog.setTenant(getTenant(entity));
+        auditLog.setTenant(getTenant(entity, principal));
         auditLog.setAction(action);
         return auditLog;
     }
 
-    private void unmarkCurrentAuditLogForEntity(String entityType, Long entityId, CrudAction action) {
-        if (action == CrudAction.CREATE) {
+    private void unmarkCurrentAuditLogForEntity(String entityType, Long entityId, @Nullable String tenant,
+                                                CrudAction action) {
+        if (action == CrudAction.CREATE || properties.isCurrentTable()) {
+            return;
+        }
+        if (properties.isBulkSupersession()) {
+            metrics.unmarked(repository.unmarkCurrent(entityType, entityId, tenant == null ? "" : tenant));
             return;
         }
-        repository.findByEntityTypeAndEntityIdAndCurrentTrue(entityType, entityId)
-                        .forEach(auditLog -> {
-                            auditLog.setCurrent(false);
-                            repository.save(auditLog);
-                        });
+        List<AuditLog<Object>> current = repository.findByEntityTypeAndEntityIdAndCurrentTrue(entityType, entityId);
+        current.forEach(auditLog -> {
+            auditLog.setCurrent(false);
+            repository.save(auditLog);
+        });
+        metrics.unmarked(current.size());
+    }
+
+    private AuditPrincipal currentPrincipal() {
+        TransactionAuditLogs auditLogs = currentAuditLogs.get();
+        if (auditLogs.getPrincipal() == null) {
+            auditLogs.setPrincipal(principalProvider.currentPrincipal());
+        }
+        return auditLogs.getPrincipal();
     }
 
     @Nullable
     private Long getEntityId(Object entity, CrudAction action) {
-        Long id = EntityUtils.findId(entity, Long.class);
+        Long id = registry.get(entity).readId(entity);
         if (id == null) {
             if (action == CrudAction.CREATE) {
                 return null;
@@ -91,42 +164,33 @@ public class AuditLogService {
         return id;
     }
     
-    private String getTenant(Object entity) {
-        String tenant = FieldUtils.readFirst(entity, String.class, 
-                field -> AnnotationUtils.isArrayContain(field.getAnnotations(), "Tenant"));
+    private String getTenant(Object entity, AuditPrincipal principal) {
+        String tenant = registry.get(entity).readTenant(entity);
         if (tenant == null) {
-            tenant = tenantContext.get();
+            tenant = principal.getTenant();
         }
         return tenant;
     }
 
     @Nullable
-    private <T> AuditLog<T> findInContext(String entityType, Long entityId, UUID transactionId,
-                                          CrudAction action) {
-        List<AuditLog<T>> presentInContext = currentAuditLogs.get().stream()
-                .filter(auditLog -> {
-                    String presentEntityType = auditLog.getEntity().getClass().getName();
-                    Long presentEntityId = getEntityId(auditLog.getEntity(), action);
-                    return Objects.equals(presentEntityType, entityType)
-                            && Objects.equals(presentEntityId, entityId);
-                })
-                .map(auditLog -> (AuditLog<T>) auditLog)
-                .collect(Collectors.toList());
-        if (presentInContext.isEmpty()) {
-            return null;
+    private <T> AuditLog<T> findInContext(AuditLogKey key, Object entity, @Nullable UUID transactionId) {
+        TransactionAuditLogs auditLogs = currentAuditLogs.get();
+        if (key.getEntityId() != null) {
+            auditLogs.identify(present -> registry.get(present).readId(present));
         }
-        if (presentInContext.size() > 1) {
-            throw new AuditException("More than one AuditLog present in the context with entityType "
-                    + entityType + " and entityId " + entityId);
+        AuditLog<T> present = auditLogs.get(key, entity);
+        if (present == null) {
+            return null;
         }
-        if (!Objects.equals(presentInContext.get(0).getTransactionId(), transactionId)) {
+        if (!Objects.equals(present.getTransactionId(), transactionId)) {
             throw new AuditException("The AuditLog present in the context with entityType "
-                    + entityType + " and entityId " + entityId + " has different transactionId");
+                    + key.getEntityType() + " and entityId " + key.getEntityId() + " has different transactionId");
         }
-        return presentInContext.get(0);
+        return present;
     }
 
-    private <T> void processPresentAuditLog(AuditLog<T> presentAuditLog, CrudAction newAction) {
+    private <T> void processPresentAuditLog(AuditLogKey key, AuditLog<T> presentAuditLog, CrudAction newAction) {
+        metrics.coalesced(presentAuditLog.getAction(), newAction);
         if (presentAuditLog.getAction() == newAction) {
             return;
         }
@@ -143,7 +207,7 @@ public class AuditLogService {
                 AuditLogUtil.verifyPresentAuditLogOnPatch(presentAuditLog);
                 break;
             case DELETE:
-                processPresentAuditLogOnDelete(presentAuditLog);
+                processPresentAuditLogOnDelete(key, presentAuditLog);
                 break;
             default:
                 throw new AuditException("Unknown combination of AuditLog present in the context (with"
@@ -156,17 +220,91 @@ public class AuditLogService {
     private void processPresentAuditLogOnUpdate(AuditLog<?> presentAuditLog) {
         if (presentAuditLog.getAction() == CrudAction.DELETE) {
             presentAuditLog.setAction(CrudAction.UPDATE);
-            repository.save(presentAuditLog);
+            save(presentAuditLog);
         }
     }
 
-    private void processPresentAuditLogOnDelete(AuditLog<?> presentAuditLog) {
+    private void processPresentAuditLogOnDelete(AuditLogKey key, AuditLog<?> presentAuditLog) {
         if (presentAuditLog.getAction() == CrudAction.CREATE) {
-            currentAuditLogs.get().remove(presentAuditLog);
-            repository.delete(presentAuditLog);
+            currentAuditLogs.get().remove(key, presentAuditLog);
+            if (!TransactionAuditLogs.isPending(presentAuditLog)) {
+                repository.delete(presentAuditLog);
+                if (properties.isCurrentTable()) {
+                    currentUpdater.remove(presentAuditLog);
+                }
+            }
         } else if (presentAuditLog.getAction() == CrudAction.UPDATE) {
             presentAuditLog.setAction(CrudAction.DELETE);
-            repository.save(presentAuditLog);
+            save(presentAuditLog);
+        }
+    }
+
+    private void save(AuditLog<?> presentAuditLog) {
+        if (!TransactionAuditLogs.isPending(presentAuditLog)) {
+            persist(presentAuditLog);
+        }
+    }
+
+    private void persist(AuditLog<?> auditLog) {
+        repository.save(auditLog);
+        if (properties.isCurrentTable()) {
+            if (auditLog.getEntityId() == null) {
+                auditLog.setEntityId(registry.get(auditLog.getEntity()).readId(auditLog.getEntity()));
+            }
+            currentUpdater.update(auditLog);
+        }
+    }
+
+    private List<AuditLog<?>> preparePending(TransactionAuditLogs auditLogs) {
+        List<AuditLog<?>> pending = auditLogs.pending();
+        for (AuditLog<?> auditLog : pending) {
+            if (auditLog.getEntityId() == null) {
+                auditLog.setEntityId(registry.get(auditLog.getEntity()).readId(auditLog.getEntity()));
+            }
+            if (auditLog.getEntityId() == null) {
+                throw new AuditException("Can't save AuditLog: entity id is null");
+            }
+        }
+        return pending;
+    }
+
+    @RequiredArgsConstructor
+    private class AuditLogsSynchronization implements TransactionSynchronization {
+
+        private final TransactionAuditLogs auditLogs;
+        private final AuditVisibilityTracker.Token token = visibilityTracker.open();
+        private List<AuditLog<?>> pending;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            pending = preparePending(auditLogs);
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (properties.getWriteMode() == AuditWriteMode.ASYNC) {
+                // Fails the transaction instead of blocking in afterCommit while it still holds its connection
+                asyncWriter.getObject().awaitCapacity();
+            } else {
+                batchWriter.write(pending);
+                visibilityTracker.observeLatest();
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+            if (properties.getWriteMode() == AuditWriteMode.ASYNC) {
+                // Announced by the drainer once the AuditLogs are in the database
+                asyncWriter.getObject().submit(pending);
+            } else {
+                commitPublisher.committed(auditLogs.all());
+            }
+            metrics.transactionCommitted(auditLogs.size());
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            auditLogs.all().forEach(auditLog -> visibilityTracker.observe(auditLog.getNumber()));
+            visibilityTracker.close(token);
         }
     }
 }
@@ -0,0 +1,165 @@
+package software.plusminus.audit.service;
+
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.lang.Nullable;
+import software.plusminus.audit.annotation.Auditable;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.util.AnnotationUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public final class AuditMetadata {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final boolean auditable;
+    @Nullable
+    private final MethodHandle idGetter;
+    @Nullable
+    private final MethodHandle tenantGetter;
+    private final Map<String, MethodHandle> changeGetters;
+
+    private AuditMetadata(boolean auditable, @Nullable MethodHandle idGetter, @Nullable MethodHandle tenantGetter,
+                          Map<String, MethodHandle> changeGetters) {
+        this.auditable = auditable;
+        this.idGetter = idGetter;
+        this.tenantGetter = tenantGetter;
+        this.changeGetters = changeGetters;
+    }
+
+    static AuditMetadata of(Class<?> type) {
+        Auditable auditable = org.springframework.core.annotation.AnnotationUtils
+                .findAnnotation(type, Auditable.class);
+        boolean captureChanges = auditable != null && auditable.changes();
+        List<String> changeFields = captureChanges ? Arrays.asList(auditable.fields()) : Collections.emptyList();
+        List<String> excludedFields = captureChanges
+                ? Arrays.asList(auditable.excludedFields())
+                : Collections.emptyList();
+        Map<String, MethodHandle> changeGetters = new LinkedHashMap<>();
+        Field idField = null;
+        Field tenantField = null;
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                if (idField == null && isId(field)) {
+                    idField = field;
+                }
+                if (tenantField == null && field.getType() == String.class
+                        && AnnotationUtils.isArrayContain(field.getAnnotations(), "Tenant")) {
+                    tenantField = field;
+                }
+                if (captureChanges && isChangeField(field, changeFields, excludedFields)) {
+                    changeGetters.putIfAbsent(field.getName(), getter(field));
+                }
+            }
+        }
+        return new AuditMetadata(auditable != null, getter(idField), getter(tenantField),
+                Collections.unmodifiableMap(changeGetters));
+    }
+
+    public boolean isAuditable() {
+        return auditable;
+    }
+
+    /**
+     * The id of a Hibernate proxy is read without initializing it.
+     */
+    @Nullable
+    public Long readId(Object entity) {
+        Object id = entity instanceof HibernateProxy
+                ? ((HibernateProxy) entity).getHibernateLazyInitializer().getIdentifier()
+                : read(idGetter, entity);
+        if (id == null || id instanceof Long) {
+            return (Long) id;
+        }
+        if (id instanceof Number) {
+            return ((Number) id).longValue();
+        }
+        throw new AuditException("Unsupported id type " + id.getClass().getName()
+                + " of entity " + entity.getClass().getName());
+    }
+
+    @Nullable
+    public String readTenant(Object entity) {
+        return (String) read(tenantGetter, entity);
+    }
+
+    public boolean isCapturingChanges() {
+        return !changeGetters.isEmpty();
+    }
+
+    public Set<String> getChangeFields() {
+        return changeGetters.keySet();
+    }
+
+    @Nullable
+    public Object readField(String field, Object entity) {
+        return read(changeGetters.get(field), entity);
+    }
+
+    @Nullable
+    @SuppressWarnings("squid:S1181")
+    private static Object read(@Nullable MethodHandle getter, Object entity) {
+        if (getter == null) {
+            return null;
+        }
+        try {
+            return (Object) getter.invokeExact(Hibernate.unproxy(entity));
+        } catch (Throwable throwable) {
+            throw new AuditException(throwable);
+        }
+    }
+
+    private static boolean isId(Field field) {
+        return hasAnnotation(field, "Id");
+    }
+
+    private static boolean isChangeField(Field field, List<String> changeFields, List<String> excludedFields) {
+        if (excludedFields.contains(field.getName())) {
+            return false;
+        }
+        if (!changeFields.isEmpty()) {
+            return changeFields.contains(field.getName());
+        }
+        return !Modifier.isTransient(field.getModifiers())
+                && !hasAnnotation(field, "Id")
+                && !hasAnnotation(field, "Version")
+                && !hasAnnotation(field, "Transient");
+    }
+
+    private static boolean hasAnnotation(Field field, String simpleName) {
+        for (Annotation annotation : field.getAnnotations()) {
+            if (annotation.annotationType().getSimpleName().equals(simpleName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static MethodHandle getter(@Nullable Field field) {
+        if (field == null) {
+            return null;
+        }
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new AuditException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package software.plusminus.audit.service;
+
+import org.hibernate.proxy.HibernateProxyHelper;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AuditMetadataRegistry {
+
+    private final ClassValue<AuditMetadata> metadata = new ClassValue<AuditMetadata>() {
+        @Override
+        protected AuditMetadata computeValue(Class<?> type) {
+            return AuditMetadata.of(type);
+        }
+    };
+
+    public AuditMetadata get(Class<?> type) {
+        return metadata.get(type);
+    }
+
+    /**
+     * Hibernate proxies get the metadata of their entity class.
+     */
+    public AuditMetadata get(Object entity) {
+        return metadata.get(HibernateProxyHelper.getClassWithoutInitializingProxy(entity));
+    }
+}
@@ -0,0 +1,40 @@
+package software.plusminus.audit.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.util.function.SingletonSupplier;
+
+import java.util.function.Supplier;
+
+/**
+ * Who writes the AuditLogs of one transaction, captured with its tenant when the first AuditLog is created,
+ * so later changes of the tenant context within the transaction don't affect it.
+ */
+@Value
+public class AuditPrincipal {
+
+    @Nullable
+    String username;
+    String device;
+    @Getter(AccessLevel.NONE)
+    Supplier<String> tenant;
+
+    public static AuditPrincipal of(@Nullable String username, @Nullable String device, @Nullable String tenant) {
+        return new AuditPrincipal(username, device == null ? "" : device, () -> tenant);
+    }
+
+    /**
+     * The tenant is resolved once, when an AuditLog of an entity without a tenant of its own needs it.
+     */
+    public static AuditPrincipal withLazyTenant(@Nullable String username, @Nullable String device,
+                                                Supplier<String> tenant) {
+        return new AuditPrincipal(username, device == null ? "" : device, SingletonSupplier.of(tenant));
+    }
+
+    @Nullable
+    public String getTenant() {
+        return tenant.get();
+    }
+}
@@ -0,0 +1,12 @@
+package software.plusminus.audit.service;
+
+/**
+ * Supplies the principal captured by the first AuditLog of every transaction.
+ * Register a bean to audit callers without a security or device context, it replaces
+ * {@link ContextAuditPrincipalProvider}.
+ */
+public interface AuditPrincipalProvider {
+
+    AuditPrincipal currentPrincipal();
+
+}
@@ -0,0 +1,136 @@
+package software.plusminus.audit.service;
+
+import lombok.AllArgsConstructor;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.config.AuditRoutingMode;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.repository.AuditLogRepository;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the visibility watermark: the highest AuditLog number below which every number is committed
+ * or rolled back. IDENTITY numbers are assigned at insert but committed in any order, so feeds capped
+ * at the watermark never see 105 before 104 and never skip 104.
+ * <p>
+ * A writing transaction opens a {@link Token} before its first insert. The token keeps the highest number
+ * known at that moment, and every number the transaction gets is greater than it. The watermark is
+ * the lowest token of all open ones, or the highest known number if no token is open.
+ * <p>
+ * The highest known number is raised by the writers of this instance and read from the database every
+ * {@code plusminus.audit.visibility-refresh-interval}, so numbers committed by other instances or by writers
+ * bypassing the tracker become visible within that interval. Open transactions of those writers hold
+ * no token, so only gaps left by the writers of this instance are guaranteed not to be skipped.
+ * <p>
+ * Numbers are tracked for the single audit_log table, so the tracking can't be combined with
+ * {@code plusminus.audit.routing.mode}, where every routed table has its own numbers.
+ */
+@Component
+public class AuditVisibilityTracker {
+
+    private static final long UNKNOWN = -1;
+
+    private final AuditLogRepository repository;
+    private final AuditProperties properties;
+    private final long refreshInterval;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong knownMax = new AtomicLong(UNKNOWN);
+    private volatile long refreshedAt;
+    private final NavigableSet<Token> open = new ConcurrentSkipListSet<>(Comparator
+            .comparingLong((Token token) -> token.floor)
+            .thenComparingLong(token -> token.id));
+
+    public AuditVisibilityTracker(AuditLogRepository repository, AuditProperties properties) {
+        if (properties.isVisibilityWatermark() && properties.getRouting().getMode() != AuditRoutingMode.NONE) {
+            throw new AuditException("plusminus.audit.visibility-watermark is not supported with "
+                    + "plusminus.audit.routing.mode " + properties.getRouting().getMode());
+        }
+        this.repository = repository;
+        this.properties = properties;
+        this.refreshInterval = properties.getVisibilityRefreshInterval().toNanos();
+    }
+
+    public boolean isEnabled() {
+        return properties.isVisibilityWatermark();
+    }
+
+    /**
+     * Returns null if the tracking is disabled.
+     */
+    @Nullable
+    public Token open() {
+        if (!isEnabled()) {
+            return null;
+        }
+        Token token = new Token(sequence.incrementAndGet(), knownMax());
+        open.add(token);
+        return token;
+    }
+
+    public void close(@Nullable Token token) {
+        if (token != null) {
+            open.remove(token);
+        }
+    }
+
+    /**
+     * Must be called with the numbers of the transaction before its token is closed.
+     */
+    public void observe(@Nullable Long number) {
+        if (number != null && isEnabled()) {
+            knownMax.accumulateAndGet(number, Math::max);
+        }
+    }
+
+    /**
+     * Observes the highest number visible to the current transaction, including its own inserts.
+     * Used after batch inserts which do not return the generated numbers.
+     */
+    public void observeLatest() {
+        if (isEnabled()) {
+            observe(repository.findMaxNumber());
+        }
+    }
+
+    /**
+     * Every AuditLog with number up to the returned value is either committed or rolled back.
+     * {@link Long#MAX_VALUE} if the tracking is disabled.
+     */
+    public long safeWatermark() {
+        if (!isEnabled()) {
+            return Long.MAX_VALUE;
+        }
+        long max = knownMax();
+        Iterator<Token> lowest = open.iterator();
+        return lowest.hasNext() ? Math.min(lowest.next().floor, max) : max;
+    }
+
+    private long knownMax() {
+        long max = knownMax.get();
+        if (max != UNKNOWN && System.nanoTime() - refreshedAt < refreshInterval) {
+            return max;
+        }
+        synchronized (knownMax) {
+            if (knownMax.get() == UNKNOWN || System.nanoTime() - refreshedAt >= refreshInterval) {
+                Long number = repository.findMaxNumber();
+                knownMax.accumulateAndGet(number == null ? 0 : number, Math::max);
+                refreshedAt = System.nanoTime();
+            }
+            return knownMax.get();
+        }
+    }
+
+    @AllArgsConstructor
+    public static final class Token {
+
+        private final long id;
+        private final long floor;
+
+    }
+}
@@ -0,0 +1,104 @@
+package software.plusminus.audit.service;
+
+import lombok.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.repository.AuditCurrentRepository;
+import software.plusminus.audit.repository.AuditLogRepository;
+import software.plusminus.audit.routing.AuditTableRouting;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Highest committed AuditLog number per tenant and entity type, so that feed requests without news
+ * can be answered without a query.
+ * Cached watermarks are raised by {@link AuditCommitPublisher} in every write mode: after commit
+ * in immediate and write-behind modes and after the drain transaction in async mode, when the numbers
+ * are assigned. Changes committed by other instances are seen after {@code plusminus.audit.watermark-ttl}.
+ */
+@Service
+public class AuditWatermarkService {
+
+    private final Map<WatermarkKey, Watermark> watermarks = new ConcurrentHashMap<>();
+    private final AuditLogRepository repository;
+    private final AuditCurrentRepository currentRepository;
+    private final AuditTableRouting tableRouting;
+    private final boolean currentTable;
+    private final long ttl;
+
+    public AuditWatermarkService(AuditLogRepository repository, AuditCurrentRepository currentRepository,
+                                 AuditTableRouting tableRouting, AuditProperties properties) {
+        this.repository = repository;
+        this.currentRepository = currentRepository;
+        this.tableRouting = tableRouting;
+        this.currentTable = properties.isCurrentTable();
+        this.ttl = properties.getWatermarkTtl().toNanos();
+    }
+
+    /**
+     * Returns false only if no AuditLog of the types was committed after {@code lastSeen}.
+     */
+    public boolean hasChanges(@Nullable String tenant, Collection<String> types, long lastSeen) {
+        for (String type : types) {
+            if (watermark(tenant, type) > lastSeen) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long watermark(@Nullable String tenant, String entityType) {
+        WatermarkKey key = new WatermarkKey(tenant == null ? "" : tenant, entityType);
+        long now = System.nanoTime();
+        Watermark cached = watermarks.get(key);
+        if (cached != null && now - cached.getLoadedAt() <= ttl) {
+            return cached.getNumber();
+        }
+        // Loading inside compute() makes commits of the same key wait, so none of them is lost
+        return watermarks.compute(key, (k, current) -> current != null && now - current.getLoadedAt() <= ttl
+                ? current
+                : load(k, now)).getNumber();
+    }
+
+    /**
+     * Called by {@link AuditCommitPublisher} once the AuditLogs are committed.
+     */
+    public void onCommitted(Collection<? extends AuditLog<?>> auditLogs) {
+        for (AuditLog<?> auditLog : auditLogs) {
+            WatermarkKey key = new WatermarkKey(auditLog.getTenant() == null ? "" : auditLog.getTenant(),
+                    auditLog.getEntityType());
+            Long number = auditLog.getNumber();
+            if (number == null) {
+                // Not expected since every write mode assigns numbers, but never keep a stale watermark
+                watermarks.remove(key);
+            } else {
+                watermarks.computeIfPresent(key, (k, watermark) -> watermark.getNumber() >= number
+                        ? watermark
+                        : new Watermark(number, watermark.getLoadedAt()));
+            }
+        }
+    }
+
+    private Watermark load(WatermarkKey key, long now) {
+        Long number = tableRouting.withTenant(key.getTenant(), () -> currentTable
+                ? currentRepository.findMaxNumber(key.getEntityType(), key.getTenant())
+                : repository.findMaxNumber(key.getEntityType(), key.getTenant()));
+        return new Watermark(number == null ? 0 : number, now);
+    }
+
+    @Value
+    private static class WatermarkKey {
+        String tenant;
+        String entityType;
+    }
+
+    @Value
+    private static class Watermark {
+        long number;
+        long loadedAt;
+    }
+}
@@ -0,0 +1,22 @@
+package software.plusminus.audit.service;
+
+import lombok.AllArgsConstructor;
+import software.plusminus.context.Context;
+import software.plusminus.security.Security;
+
+/**
+ * Registered by {@code AuditAutoconfig} unless the application defines its own {@link AuditPrincipalProvider}.
+ */
+@AllArgsConstructor
+public class ContextAuditPrincipalProvider implements AuditPrincipalProvider {
+
+    private Context<Security> securityContext;
+    private DeviceContext deviceContext;
+    private Context<String> tenantContext;
+
+    @Override
+    public AuditPrincipal currentPrincipal() {
+        return AuditPrincipal.withLazyTenant(securityContext.get().getUsername(), deviceContext.currentDevice(),
+                tenantContext::get);
+    }
+}
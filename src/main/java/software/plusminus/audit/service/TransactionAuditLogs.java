@@ -0,0 +1,117 @@
+package software.plusminus.audit.service;
+
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogKey;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * AuditLogs of one transaction keyed by entity type and id. AuditLogs of entities without id yet are matched
+ * by entity identity and re-keyed by {@link #identify} once their entities get ids.
+ */
+class TransactionAuditLogs {
+
+    private final Map<AuditLogKey, AuditLog<?>> auditLogs = new LinkedHashMap<>();
+    private final List<AuditLog<?>> unidentified = new ArrayList<>();
+    private boolean synchronizationRegistered;
+    @Nullable
+    private AuditPrincipal principal;
+
+    @Nullable
+    <T> AuditLog<T> get(AuditLogKey key, Object entity) {
+        if (key.getEntityId() != null) {
+            return (AuditLog<T>) auditLogs.get(key);
+        }
+        for (AuditLog<?> auditLog : unidentified) {
+            if (auditLog.getEntity() == entity) {
+                return (AuditLog<T>) auditLog;
+            }
+        }
+        return null;
+    }
+
+    void add(AuditLogKey key, AuditLog<?> auditLog) {
+        if (key.getEntityId() == null) {
+            unidentified.add(auditLog);
+        } else {
+            put(key, auditLog);
+        }
+    }
+
+    /**
+     * Moves the AuditLogs whose entities got ids since they were logged to their keys.
+     */
+    void identify(Function<Object, Long> ids) {
+        Iterator<AuditLog<?>> iterator = unidentified.iterator();
+        while (iterator.hasNext()) {
+            AuditLog<?> auditLog = iterator.next();
+            Long id = ids.apply(auditLog.getEntity());
+            if (id != null) {
+                iterator.remove();
+                auditLog.setEntityId(id);
+                put(new AuditLogKey(auditLog.getEntityType(), id), auditLog);
+            }
+        }
+    }
+
+    void remove(AuditLogKey key, AuditLog<?> auditLog) {
+        if (!auditLogs.remove(key, auditLog)) {
+            unidentified.remove(auditLog);
+        }
+    }
+
+    @Nullable
+    AuditPrincipal getPrincipal() {
+        return principal;
+    }
+
+    void setPrincipal(AuditPrincipal principal) {
+        this.principal = principal;
+    }
+
+    int size() {
+        return auditLogs.size() + unidentified.size();
+    }
+
+    List<AuditLog<?>> all() {
+        List<AuditLog<?>> all = new ArrayList<>(auditLogs.values());
+        all.addAll(unidentified);
+        return all;
+    }
+
+    List<AuditLog<?>> pending() {
+        return Stream.concat(auditLogs.values().stream(), unidentified.stream())
+                .filter(TransactionAuditLogs::isPending)
+                .collect(Collectors.toList());
+    }
+
+    void registerSynchronization(Function<TransactionAuditLogs, TransactionSynchronization> synchronization) {
+        if (synchronizationRegistered) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(synchronization.apply(this));
+        synchronizationRegistered = true;
+    }
+
+    private void put(AuditLogKey key, AuditLog<?> auditLog) {
+        if (auditLogs.putIfAbsent(key, auditLog) != null) {
+            throw new AuditException("More than one AuditLog present in the context with entityType "
+                    + key.getEntityType() + " and entityId " + key.getEntityId());
+        }
+    }
+
+    static boolean isPending(AuditLog<?> auditLog) {
+        return auditLog.getNumber() == null;
+    }
+}
@@ -3,30 +3,82 @@ package software.plusminus.audit.service;
 import lombok.AllArgsConstructor;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 
 import java.util.UUID;
-import java.util.regex.Pattern;
 import javax.servlet.http.HttpServletRequest;
 
 @AllArgsConstructor
 @Component
 public class TransactionIdProvider {
 
-    private static final Pattern UUID_REGEX = Pattern.compile(
-            "^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
+    private static final String ATTRIBUTE = TransactionIdProvider.class.getName() + ".transactionId";
+    private static final Object ABSENT = new Object();
+    private static final int UUID_LENGTH = 36;
 
     private HttpServletRequest request;
 
+    /**
+     * Parses the {@code transaction} request parameter once per request and caches the result
+     * as a request attribute.
+     */
     @Nullable
     public UUID currentTransactionId() {
-        if (RequestContextHolder.getRequestAttributes() == null) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
             return null;
         }
-        String transactionId = request.getParameter("transaction");
-        if (transactionId == null || !UUID_REGEX.matcher(transactionId).matches()) {
+        Object cached = attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (cached == null) {
+            UUID transactionId = parse(request.getParameter("transaction"));
+            cached = transactionId == null ? ABSENT : transactionId;
+            attributes.setAttribute(ATTRIBUTE, cached, RequestAttributes.SCOPE_REQUEST);
+        }
+        return cached == ABSENT ? null : (UUID) cached;
+    }
+
+    /**
+     * Parses the canonical 8-4-4-4-12 hex form, returns null for anything else.
+     */
+    @Nullable
+    static UUID parse(@Nullable String value) {
+        if (value == null || value.length() != UUID_LENGTH) {
             return null;
         }
-        return UUID.fromString(transactionId);
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return null;
+                }
+                continue;
+            }
+            int digit = hex(c);
+            if (digit < 0) {
+                return null;
+            }
+            if (i < 18) {
+                mostSigBits = mostSigBits << 4 | digit;
+            } else {
+                leastSigBits = leastSigBits << 4 | digit;
+            }
+        }
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
     }
 }
@@ -0,0 +1,197 @@
+package software.plusminus.audit.sse;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.event.AuditLogsCommittedEvent;
+import software.plusminus.audit.model.AuditLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+
+/**
+ * Pushes committed changes to subscribed devices. Subscribers are partitioned by tenant, and every subscriber
+ * has a queue of its own drained by a background thread, so a slow client never delays a commit or other
+ * subscribers. A subscriber whose queue is full is disconnected.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "plusminus.audit.sse", name = "enabled", havingValue = "true")
+public class AuditChangeBroadcaster {
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AuditProperties.Sse properties;
+    private final ExecutorService executor;
+
+    public AuditChangeBroadcaster(AuditProperties properties) {
+        this.properties = properties.getSse();
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "audit-sse-broadcaster");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public SseEmitter subscribe(@Nullable String tenant, Collection<String> types, @Nullable String device) {
+        SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        Set<Subscriber> tenantSubscribers = subscribers.computeIfAbsent(key(tenant),
+                k -> new CopyOnWriteArraySet<>());
+        Subscriber subscriber = new Subscriber(emitter, new HashSet<>(types), device, tenantSubscribers,
+                properties.getQueueCapacity());
+        tenantSubscribers.add(subscriber);
+        Runnable remove = () -> tenantSubscribers.remove(subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        return emitter;
+    }
+
+    /**
+     * Runs on the committing thread and never waits for a subscriber.
+     */
+    @EventListener
+    public void onCommitted(AuditLogsCommittedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Map<String, List<AuditLog<?>>> byTenant = new HashMap<>();
+        event.getAuditLogs().forEach(auditLog -> byTenant
+                .computeIfAbsent(key(auditLog.getTenant()), k -> new ArrayList<>())
+                .add(auditLog));
+        byTenant.forEach(this::broadcast);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+        subscribers.values().forEach(tenantSubscribers -> tenantSubscribers
+                .forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private void broadcast(String tenant, List<AuditLog<?>> auditLogs) {
+        Set<Subscriber> tenantSubscribers = subscribers.get(tenant);
+        if (tenantSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : tenantSubscribers) {
+            List<AuditChangeNotification> notifications = new ArrayList<>();
+            for (AuditLog<?> auditLog : auditLogs) {
+                if (subscriber.accepts(auditLog)) {
+                    notifications.add(new AuditChangeNotification(auditLog.getEntityType(),
+                            auditLog.getEntityId(), auditLog.getAction(), auditLog.getNumber()));
+                }
+            }
+            if (!notifications.isEmpty()) {
+                subscriber.offer(notifications);
+            }
+        }
+    }
+
+    private static String key(@Nullable String tenant) {
+        return tenant == null ? "" : tenant;
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Set<String> types;
+        @Nullable
+        private final String device;
+        private final Set<Subscriber> tenantSubscribers;
+        private final BlockingQueue<List<AuditChangeNotification>> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean overflowed;
+        private volatile boolean failed;
+
+        private Subscriber(SseEmitter emitter, Set<String> types, @Nullable String device,
+                           Set<Subscriber> tenantSubscribers, int queueCapacity) {
+            this.emitter = emitter;
+            this.types = types;
+            this.device = device;
+            this.tenantSubscribers = tenantSubscribers;
+            this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        }
+
+        private boolean accepts(AuditLog<?> auditLog) {
+            return types.contains(auditLog.getEntityType())
+                    && (device == null || !device.equals(auditLog.getDevice()));
+        }
+
+        /**
+         * The emitter may be blocked by a send in progress, so an overflowed subscriber is completed
+         * by its drainer.
+         */
+        private void offer(List<AuditChangeNotification> notifications) {
+            if (!queue.offer(notifications)) {
+                tenantSubscribers.remove(this);
+                overflowed = true;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        /**
+         * The subscriber reconnects and catches up with the feed queries, so no change is lost when it is
+         * disconnected.
+         */
+        private void drain() {
+            try {
+                List<AuditChangeNotification> notifications;
+                while (!overflowed && !failed && (notifications = queue.poll()) != null) {
+                    send(notifications);
+                }
+                if (overflowed && !failed) {
+                    log.warn("Disconnecting a slow audit change subscriber: its queue is full");
+                    queue.clear();
+                    emitter.complete();
+                }
+            } finally {
+                draining.set(false);
+            }
+            if (!overflowed && !failed && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        private void send(List<AuditChangeNotification> notifications) {
+            try {
+                emitter.send(SseEmitter.event().name("changes").data(notifications));
+            } catch (IOException | IllegalStateException e) {
+                tenantSubscribers.remove(this);
+                failed = true;
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
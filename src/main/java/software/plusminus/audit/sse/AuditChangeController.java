@@ -0,0 +1,32 @@
+package software.plusminus.audit.sse;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import software.plusminus.context.Context;
+
+import java.util.List;
+
+/**
+ * Server-sent change notifications. After reconnecting clients catch up with the feed queries
+ * starting from the last number they have seen.
+ */
+@AllArgsConstructor
+@RestController
+@ConditionalOnProperty(prefix = "plusminus.audit.sse", name = "enabled", havingValue = "true")
+public class AuditChangeController {
+
+    private AuditChangeBroadcaster broadcaster;
+    private Context<String> tenantContext;
+
+    @GetMapping(path = "${plusminus.audit.sse.path:/audit/changes}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(@RequestParam("types") List<String> types,
+                              @Nullable @RequestParam(name = "device", required = false) String device) {
+        return broadcaster.subscribe(tenantContext.get(), types, device);
+    }
+}
@@ -0,0 +1,14 @@
+package software.plusminus.audit.sse;
+
+import lombok.Value;
+import software.plusminus.crud.CrudAction;
+
+@Value
+public class AuditChangeNotification {
+
+    String entityType;
+    Long entityId;
+    CrudAction action;
+    Long number;
+
+}
@@ -0,0 +1,54 @@
+package software.plusminus.audit.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.experimental.UtilityClass;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.model.AuditLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+@UtilityClass
+public class AuditLogJson {
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    public String toJson(AuditLog<?> auditLog) {
+        try {
+            return mapper.writeValueAsString(auditLog);
+        } catch (JsonProcessingException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    public String toJson(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    public AuditLog<?> fromJson(String json) {
+        try {
+            return mapper.readValue(json, AuditLog.class);
+        } catch (IOException e) {
+            throw new AuditException(e);
+        }
+    }
+
+    public void write(OutputStream out, Object value) throws IOException {
+        mapper.writeValue(out, value);
+    }
+
+    public <T> T read(InputStream in, TypeReference<T> type) throws IOException {
+        return mapper.readValue(in, type);
+    }
+}
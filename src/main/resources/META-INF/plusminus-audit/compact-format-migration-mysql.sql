@@ -0,0 +1,53 @@
+-- Migrates audit tables written with the default row format to plusminus.audit.compact-format=true.
+-- Run it while the application is stopped. UNIX_TIMESTAMP() reads datetime values in the session time zone,
+-- so the session time zone must be the one of the application that wrote them.
+-- On large tables run the UPDATE statements in ranges of number to keep transactions short.
+-- Tables of an earlier plusminus-audit release must be upgraded with schema-upgrade-mysql.sql first.
+
+ALTER TABLE audit_log
+    ADD COLUMN time_millis BIGINT NULL,
+    ADD COLUMN transaction_id_binary BINARY(16) NULL;
+
+UPDATE audit_log
+SET time_millis = ROUND(UNIX_TIMESTAMP(time) * 1000),
+    transaction_id_binary = UNHEX(REPLACE(transaction_id, '-', ''));
+
+ALTER TABLE audit_log
+    DROP COLUMN time,
+    DROP COLUMN transaction_id,
+    CHANGE COLUMN time_millis time BIGINT NULL,
+    CHANGE COLUMN transaction_id_binary transaction_id BINARY(16) NULL;
+
+CREATE TABLE audit_entity_type (
+    id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    UNIQUE KEY uk_audit_entity_type_name (name)
+);
+
+INSERT INTO audit_entity_type (name) SELECT DISTINCT entity_type FROM audit_log;
+
+ALTER TABLE audit_log ADD COLUMN entity_type_id INT NULL;
+
+UPDATE audit_log l JOIN audit_entity_type t ON t.name = l.entity_type SET l.entity_type_id = t.id;
+
+-- Dropping entity_type also removes it from the indexes containing it. Drop those shrunk indexes afterwards
+-- (SHOW INDEX FROM audit_log lists their names) and create them again on the integer column.
+ALTER TABLE audit_log
+    DROP COLUMN entity_type,
+    CHANGE COLUMN entity_type_id entity_type INT NOT NULL;
+
+DROP INDEX idx_audit_log_type_entity ON audit_log;
+
+CREATE INDEX idx_audit_log_tenant_type ON audit_log (tenant, entity_type, current, number);
+CREATE INDEX idx_audit_log_type_entity ON audit_log (entity_type, entity_id, number);
+
+-- Only needed with plusminus.audit.current-table=true. audit_current keeps entity_type as a name,
+-- as it is a part of the primary key and holds one row per entity only.
+
+ALTER TABLE audit_current ADD COLUMN time_millis BIGINT NULL;
+
+UPDATE audit_current SET time_millis = ROUND(UNIX_TIMESTAMP(time) * 1000);
+
+ALTER TABLE audit_current
+    DROP COLUMN time,
+    CHANGE COLUMN time_millis time BIGINT NULL;
@@ -0,0 +1,41 @@
+-- Upgrades audit tables created by an earlier plusminus-audit release, which had no changes and no compaction.
+-- Run it while the application is stopped and before compact-format-migration-mysql.sql.
+-- The added audit_log columns are nullable, so existing rows are valid as they are.
+
+ALTER TABLE audit_log
+    ADD COLUMN changes VARBINARY(4096) NULL,
+    ADD COLUMN first_number BIGINT NULL,
+    ADD COLUMN first_action VARCHAR(255) NULL,
+    ADD COLUMN devices VARCHAR(1024) NULL;
+
+-- Serves the lookups of AuditLogs of one entity and the compaction job.
+CREATE INDEX idx_audit_log_type_entity ON audit_log (entity_type, entity_id, number);
+
+-- Only needed with plusminus.audit.current-table=true. The INSERT fills it from the current column,
+-- which is not maintained any more once the table is used.
+
+CREATE TABLE audit_current (
+    tenant VARCHAR(255) NOT NULL,
+    entity_type VARCHAR(255) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    number BIGINT NOT NULL,
+    time DATETIME(6) NULL,
+    username VARCHAR(255) NULL,
+    device VARCHAR(255) NULL,
+    action VARCHAR(255) NULL,
+    PRIMARY KEY (tenant, entity_type, entity_id),
+    KEY idx_audit_current_tenant_type (tenant, entity_type, number),
+    CONSTRAINT fk_audit_current_number FOREIGN KEY (number) REFERENCES audit_log (number)
+);
+
+INSERT INTO audit_current (tenant, entity_type, entity_id, number, time, username, device, action)
+SELECT COALESCE(tenant, ''), entity_type, entity_id, number, time, username, device, action
+FROM audit_log
+WHERE current = TRUE AND action <> 'DELETE';
+
+-- Only needed with plusminus.audit.write-mode=async.
+
+CREATE TABLE audit_journal_position (
+    journal VARCHAR(255) NOT NULL PRIMARY KEY,
+    position BIGINT NOT NULL
+);
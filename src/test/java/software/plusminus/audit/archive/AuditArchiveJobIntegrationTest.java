@@ -0,0 +1,84 @@
+package software.plusminus.audit.archive;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.util.FileSystemUtils;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.io.File;
+import java.util.List;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = {
+        "plusminus.audit.archive.enabled=true",
+        "plusminus.audit.archive.directory=" + AuditArchiveJobIntegrationTest.ARCHIVE,
+        "plusminus.audit.archive.min-age=PT0S",
+        "plusminus.audit.archive.pause=PT0S",
+        "plusminus.audit.archive.interval=PT1000H"
+})
+public class AuditArchiveJobIntegrationTest extends IntegrationTest {
+
+    static final String ARCHIVE = "target/audit-archive-job-test";
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService service;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private AuditArchive archive;
+
+    @Autowired
+    private AuditArchiveJob job;
+
+    @BeforeClass
+    public static void deleteArchive() {
+        FileSystemUtils.deleteRecursively(new File(ARCHIVE));
+    }
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void movesSupersededAuditLogsToArchive() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+
+        job.archive();
+        List<AuditLog<?>> archived = archive.find(TestEntity.class.getName(), entity.getId());
+
+        check(entityManager.find(AuditLog.class, 1L)).isNull();
+        check(entityManager.find(AuditLog.class, 2L).isCurrent()).is(true);
+        check(archived).hasSize(1);
+        check(archived.get(0).getNumber()).is(1L);
+        check(archived.get(0).getAction()).is(CrudAction.CREATE);
+    }
+}
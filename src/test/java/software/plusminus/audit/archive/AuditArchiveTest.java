@@ -0,0 +1,89 @@
+package software.plusminus.audit.archive;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.crud.CrudAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AuditArchive archive;
+    private File directory;
+
+    @Before
+    public void before() throws IOException {
+        directory = folder.newFolder();
+        AuditProperties properties = new AuditProperties();
+        properties.getArchive().setDirectory(directory.getPath());
+        archive = new AuditArchive(properties);
+    }
+
+    @Test
+    public void findsArchivedHistoryOfEntity() {
+        ZonedDateTime time = ZonedDateTime.parse("2019-03-20T15:15:01Z");
+        archive.write(Arrays.asList(
+                auditLog(1L, 1L, CrudAction.CREATE, time),
+                auditLog(2L, 2L, CrudAction.CREATE, time),
+                auditLog(3L, 1L, CrudAction.UPDATE, time.plusDays(1))));
+
+        List<AuditLog<?>> history = archive.find("some.Entity", 1L);
+
+        assertThat(history).extracting(AuditLog::getNumber).containsExactly(1L, 3L);
+        assertThat(history.get(1).getAction()).isEqualTo(CrudAction.UPDATE);
+        assertThat(archive.find("some.Entity", 3L)).isEmpty();
+    }
+
+    @Test
+    public void storesSegmentsByDay() {
+        ZonedDateTime time = ZonedDateTime.parse("2019-03-20T15:15:01Z");
+        archive.write(Arrays.asList(
+                auditLog(1L, 1L, CrudAction.CREATE, time),
+                auditLog(2L, 1L, CrudAction.UPDATE, time.plusDays(1))));
+
+        assertThat(new File(directory, "2019/03/20").list()).hasSize(1);
+        assertThat(new File(directory, "2019/03/21").list()).hasSize(1);
+    }
+
+    @Test
+    public void findsBatchArchivedTwiceOnce() {
+        ZonedDateTime time = ZonedDateTime.parse("2019-03-20T15:15:01Z");
+        archive.write(Arrays.asList(
+                auditLog(1L, 1L, CrudAction.CREATE, time),
+                auditLog(2L, 1L, CrudAction.UPDATE, time)));
+        archive.write(Arrays.asList(
+                auditLog(2L, 1L, CrudAction.UPDATE, time),
+                auditLog(3L, 1L, CrudAction.UPDATE, time)));
+
+        assertThat(archive.find("some.Entity", 1L)).extracting(AuditLog::getNumber).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    public void findsNothingInEmptyArchive() {
+        assertThat(archive.find("some.Entity", 1L)).isEmpty();
+    }
+
+    private static AuditLog<?> auditLog(Long number, Long entityId, CrudAction action, ZonedDateTime time) {
+        AuditLog<?> auditLog = new AuditLog<>();
+        auditLog.setNumber(number);
+        auditLog.setEntityType("some.Entity");
+        auditLog.setEntityId(entityId);
+        auditLog.setAction(action);
+        auditLog.setTime(time);
+        auditLog.setDevice("Device");
+        return auditLog;
+    }
+}
@@ -0,0 +1,87 @@
+package software.plusminus.audit.async;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.util.FileSystemUtils;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.repository.AuditLogRepository;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.io.File;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+/**
+ * A negative {@code max-journal-lag} keeps the journal always behind, so every commit runs into the deadline.
+ */
+@TestPropertySource(properties = {
+        "plusminus.audit.write-mode=async",
+        "plusminus.audit.async.journal-directory=" + AsyncAuditLogWriterBackpressureIntegrationTest.JOURNAL,
+        "plusminus.audit.async.drain-interval=PT0.02S",
+        "plusminus.audit.async.max-journal-lag=-1",
+        "plusminus.audit.async.max-journal-lag-wait=PT0.1S"
+})
+public class AsyncAuditLogWriterBackpressureIntegrationTest extends IntegrationTest {
+
+    static final String JOURNAL = "target/async-audit-journal-backpressure-test";
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService auditLogService;
+    @Autowired
+    private AuditLogRepository repository;
+
+    @Autowired
+    private AsyncAuditLogWriter writer;
+
+    @BeforeClass
+    public static void deleteJournal() {
+        FileSystemUtils.deleteRecursively(new File(JOURNAL));
+    }
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void transactionFailsWhenJournalDoesNotDrainInTime() throws InterruptedException {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        long rejectedBefore = writer.getRejectedTransactions();
+        AuditException exception = null;
+
+        try {
+            transactionalService.inTransaction(() -> auditLogService.log(entity, CrudAction.CREATE));
+        } catch (AuditException e) {
+            exception = e;
+        }
+
+        Thread.sleep(200);
+        check(exception).isNotNull();
+        check(writer.getRejectedTransactions()).is(rejectedBefore + 1);
+        check(writer.getQueueDepth()).is(0L);
+        check(repository.findByEntityTypeAndEntityIdAndCurrentTrue(TestEntity.class.getName(), 1L)).isEmpty();
+    }
+}
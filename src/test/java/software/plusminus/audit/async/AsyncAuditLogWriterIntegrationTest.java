@@ -0,0 +1,163 @@
+package software.plusminus.audit.async;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.util.FileSystemUtils;
+import software.plusminus.audit.event.AuditLogsCommittedEvent;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditJournalPosition;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.repository.AuditLogRepository;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = {
+        "plusminus.audit.write-mode=async",
+        "plusminus.audit.async.journal-directory=" + AsyncAuditLogWriterIntegrationTest.JOURNAL,
+        "plusminus.audit.async.drain-interval=PT0.02S",
+        "plusminus.audit.sse.enabled=true"
+})
+public class AsyncAuditLogWriterIntegrationTest extends IntegrationTest {
+
+    static final String JOURNAL = "target/async-audit-journal-test";
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService auditLogService;
+    @Autowired
+    private AuditLogRepository repository;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CommittedEvents committedEvents;
+
+    @Autowired
+    private AsyncAuditLogWriter writer;
+
+    @BeforeClass
+    public static void deleteJournal() {
+        FileSystemUtils.deleteRecursively(new File(JOURNAL));
+    }
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void journalsOnCommitAndDrains() throws InterruptedException {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        long drainedBefore = writer.getDrainedRecords();
+
+        transactionalService.inTransaction(() -> auditLogService.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> auditLogService.log(entity, CrudAction.UPDATE));
+
+        await(() -> writer.getDrainedRecords() == drainedBefore + 2);
+        List<AuditLog<Object>> current = repository.findByEntityTypeAndEntityIdAndCurrentTrue(
+                TestEntity.class.getName(), entity.getId());
+        check(current).hasSize(1);
+        check(current.get(0).getAction()).is(CrudAction.UPDATE);
+        check(writer.getQueueDepth()).is(0L);
+        check(transactionalService.inTransaction(
+                () -> entityManager.find(AuditJournalPosition.class, "default"))).isNotNull();
+    }
+
+    @Test
+    public void committedEventIsPublishedAfterDrain() throws InterruptedException {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        entity.setId(3L);
+        int eventsBefore = committedEvents.stored.size();
+
+        transactionalService.inTransaction(() -> auditLogService.log(entity, CrudAction.CREATE));
+
+        await(() -> committedEvents.stored.size() == eventsBefore + 1);
+        check(committedEvents.stored.get(eventsBefore)).is(true);
+    }
+
+    @Test
+    public void nothingIsJournaledOnRollback() throws InterruptedException {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        entity.setId(2L);
+        long drainedBefore = writer.getDrainedRecords();
+
+        try {
+            transactionalService.inTransaction((Runnable) () -> {
+                auditLogService.log(entity, CrudAction.CREATE);
+                throw new IllegalStateException("rollback");
+            });
+        } catch (IllegalStateException expected) {
+            // rolled back
+        }
+
+        Thread.sleep(200);
+        check(writer.getDrainedRecords()).is(drainedBefore);
+        check(repository.findByEntityTypeAndEntityIdAndCurrentTrue(TestEntity.class.getName(), 2L)).isEmpty();
+    }
+
+    @TestConfiguration
+    static class EventConfig {
+
+        @Bean
+        CommittedEvents committedEvents(EntityManager entityManager) {
+            return new CommittedEvents(entityManager);
+        }
+    }
+
+    /**
+     * Records for every announced AuditLog whether it was readable from the database at that moment.
+     */
+    static class CommittedEvents {
+
+        private final List<Boolean> stored = new CopyOnWriteArrayList<>();
+        private final EntityManager entityManager;
+
+        CommittedEvents(EntityManager entityManager) {
+            this.entityManager = entityManager;
+        }
+
+        @EventListener
+        public void onCommitted(AuditLogsCommittedEvent event) {
+            event.getAuditLogs().forEach(auditLog -> stored.add(auditLog.getNumber() != null
+                    && entityManager.find(AuditLog.class, auditLog.getNumber()) != null));
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 250 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(20);
+        }
+        check(condition.getAsBoolean()).is(true);
+    }
+}
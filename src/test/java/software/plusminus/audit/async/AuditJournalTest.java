@@ -0,0 +1,156 @@
+package software.plusminus.audit.async;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.crud.CrudAction;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditJournalTest {
+
+    private static final int SEGMENT_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private AuditJournal journal;
+
+    @Before
+    public void before() throws IOException {
+        directory = folder.newFolder().toPath();
+        journal = new AuditJournal(directory, SEGMENT_SIZE);
+    }
+
+    @After
+    public void after() {
+        journal.close();
+    }
+
+    @Test
+    public void readsOnlyForcedRecords() {
+        journal.append(bytes("first"));
+        assertThat(journal.read(10)).isEmpty();
+
+        journal.force();
+
+        assertThat(strings(journal.read(10))).containsExactly("first");
+    }
+
+    @Test
+    public void rollsSegments() {
+        for (int i = 0; i < 10; i++) {
+            journal.append(bytes("record-" + i));
+        }
+        journal.force();
+
+        List<byte[]> records = journal.read(100);
+
+        assertThat(records).hasSize(10);
+        assertThat(new String(records.get(9), StandardCharsets.UTF_8)).isEqualTo("record-9");
+    }
+
+    @Test
+    public void replaysNotCommittedRecordsAfterRestart() {
+        journal.append(bytes("drained"));
+        journal.append(bytes("pending"));
+        journal.force();
+        journal.read(1);
+        journal.commit();
+        journal.close();
+
+        journal = new AuditJournal(directory, SEGMENT_SIZE);
+        journal.append(bytes("new"));
+        journal.force();
+
+        assertThat(strings(journal.read(10))).containsExactly("pending", "new");
+    }
+
+    @Test
+    public void rewindsToCheckpoint() {
+        journal.append(bytes("first"));
+        journal.append(bytes("second"));
+        journal.force();
+        journal.read(1);
+        journal.commit();
+        journal.read(1);
+
+        journal.rewind();
+
+        assertThat(strings(journal.read(10))).containsExactly("second");
+        assertThat(journal.lag()).isPositive();
+    }
+
+    @Test
+    public void forcesUpToPosition() {
+        long first = journal.append(bytes("first"));
+        journal.append(bytes("second"));
+
+        journal.force(first);
+
+        assertThat(strings(journal.read(10))).containsExactly("first", "second");
+    }
+
+    @Test
+    public void recoversDrainedPositionAfterRestart() {
+        journal.append(bytes("drained"));
+        journal.append(bytes("pending"));
+        journal.force();
+        journal.read(1);
+        long drained = journal.readPosition();
+        journal.close();
+
+        journal = new AuditJournal(directory, SEGMENT_SIZE);
+        journal.recover(drained);
+
+        assertThat(strings(journal.read(10))).containsExactly("pending");
+    }
+
+    @Test
+    public void ignoresDrainedPositionOutsideJournal() {
+        journal.append(bytes("pending"));
+        journal.force();
+
+        journal.recover(Long.MAX_VALUE);
+
+        assertThat(strings(journal.read(10))).containsExactly("pending");
+    }
+
+    @Test
+    public void codec() {
+        AuditLog<?> auditLog = new AuditLog<>();
+        auditLog.setTenant("tenant");
+        auditLog.setEntityType("some.Entity");
+        auditLog.setEntityId(42L);
+        auditLog.setTime(ZonedDateTime.now());
+        auditLog.setUsername("user");
+        auditLog.setAction(CrudAction.PATCH);
+        auditLog.setTransactionId(UUID.randomUUID());
+
+        AuditLog<?> decoded = AuditRecordCodec.decode(AuditRecordCodec.encode(auditLog));
+
+        assertThat(decoded).isEqualToIgnoringGivenFields(auditLog, "current");
+        assertThat(decoded.isCurrent()).isTrue();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String[] strings(List<byte[]> records) {
+        return records.stream()
+                .map(record -> new String(record, StandardCharsets.UTF_8))
+                .toArray(String[]::new);
+    }
+}
@@ -0,0 +1,115 @@
+package software.plusminus.audit.compaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditCurrent;
+import software.plusminus.audit.model.AuditCurrentId;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+/**
+ * The current column stays false for every AuditLog, the current AuditLog is the one referenced by audit_current.
+ */
+@TestPropertySource(properties = {
+        "plusminus.audit.current-table=true",
+        "plusminus.audit.compaction.enabled=true",
+        "plusminus.audit.compaction.bucket=PT1H",
+        "plusminus.audit.compaction.min-age=PT0S",
+        "plusminus.audit.compaction.batch-size=2",
+        "plusminus.audit.compaction.pause=PT0S",
+        "plusminus.audit.compaction.interval=PT1000H"
+})
+public class AuditCompactionJobCurrentTableIntegrationTest extends IntegrationTest {
+
+    private static final String TENANT = "Some tenant";
+    private static final String TYPE = TestEntity.class.getName();
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService service;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AuditCompactionJob job;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void keepsAuditLogReferencedByAuditCurrent() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        for (int i = 0; i < 3; i++) {
+            transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        }
+        age(ZonedDateTime.now().minusDays(2).truncatedTo(ChronoUnit.HOURS));
+
+        job.compact();
+        AuditCurrent current = entityManager.find(AuditCurrent.class,
+                AuditCurrentId.of(TENANT, TYPE, entity.getId()));
+        AuditLog<?> currentAuditLog = entityManager.find(AuditLog.class, 4L);
+
+        check(entityManager.find(AuditLog.class, 1L)).isNull();
+        check(entityManager.find(AuditLog.class, 2L)).isNull();
+        check(entityManager.find(AuditLog.class, 3L).getFirstNumber()).is(1L);
+        check(current.getNumber()).is(4L);
+        check(currentAuditLog.isCurrent()).is(false);
+        check(currentAuditLog.getFirstNumber()).isNull();
+    }
+
+    @Test
+    public void compactsDeletedEntityIntoItsDelete() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.DELETE));
+        age(ZonedDateTime.now().minusDays(2).truncatedTo(ChronoUnit.HOURS));
+
+        job.compact();
+        AuditLog<?> summary = entityManager.find(AuditLog.class, 3L);
+
+        check(entityManager.find(AuditCurrent.class, AuditCurrentId.of(TENANT, TYPE, entity.getId()))).isNull();
+        check(entityManager.find(AuditLog.class, 1L)).isNull();
+        check(entityManager.find(AuditLog.class, 2L)).isNull();
+        check(summary.getFirstNumber()).is(1L);
+        check(summary.getFirstAction()).is(CrudAction.CREATE);
+        check(summary.getAction()).is(CrudAction.DELETE);
+    }
+
+    private void age(ZonedDateTime time) {
+        transactionalService.inTransaction(() -> entityManager
+                .createQuery("update AuditLog a set a.time = :time")
+                .setParameter("time", time)
+                .executeUpdate());
+    }
+}
@@ -0,0 +1,129 @@
+package software.plusminus.audit.compaction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = {
+        "plusminus.audit.compaction.enabled=true",
+        "plusminus.audit.compaction.bucket=PT1H",
+        "plusminus.audit.compaction.min-age=PT0S",
+        "plusminus.audit.compaction.batch-size=2",
+        "plusminus.audit.compaction.pause=PT0S",
+        "plusminus.audit.compaction.interval=PT1000H"
+})
+public class AuditCompactionJobIntegrationTest extends IntegrationTest {
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService service;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AuditCompactionJob job;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void collapsesGroupLongerThanBatchIntoOneSummary() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        for (int i = 0; i < 3; i++) {
+            transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        }
+        age(ZonedDateTime.now().minusDays(2).truncatedTo(ChronoUnit.HOURS));
+
+        job.compact();
+        AuditLog<?> summary = entityManager.find(AuditLog.class, 3L);
+        AuditLog<?> current = entityManager.find(AuditLog.class, 4L);
+
+        check(entityManager.find(AuditLog.class, 1L)).isNull();
+        check(entityManager.find(AuditLog.class, 2L)).isNull();
+        check(summary.getFirstNumber()).is(1L);
+        check(summary.getFirstAction()).is(CrudAction.CREATE);
+        check(summary.getAction()).is(CrudAction.UPDATE);
+        check(summary.getDevices()).is("TestDevice");
+        check(current.getFirstNumber()).isNull();
+    }
+
+    @Test
+    public void compactsEveryEntityInItsOwnGroup() {
+        TestEntity first = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        TestEntity second = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        second.setId(2L);
+        transactionalService.inTransaction(() -> {
+            service.log(first, CrudAction.CREATE);
+            service.log(second, CrudAction.CREATE);
+        });
+        transactionalService.inTransaction(() -> {
+            service.log(first, CrudAction.UPDATE);
+            service.log(second, CrudAction.UPDATE);
+        });
+        transactionalService.inTransaction(() -> {
+            service.log(first, CrudAction.DELETE);
+            service.log(second, CrudAction.DELETE);
+        });
+        age(ZonedDateTime.now().minusDays(2).truncatedTo(ChronoUnit.HOURS));
+
+        job.compact();
+
+        check(entityManager.find(AuditLog.class, 1L)).isNull();
+        check(entityManager.find(AuditLog.class, 2L)).isNull();
+        check(entityManager.find(AuditLog.class, 3L).getFirstNumber()).is(1L);
+        check(entityManager.find(AuditLog.class, 4L).getFirstNumber()).is(2L);
+        check(entityManager.find(AuditLog.class, 5L).getFirstNumber()).isNull();
+        check(entityManager.find(AuditLog.class, 6L).getFirstNumber()).isNull();
+    }
+
+    @Test
+    public void leavesRecentAuditLogsAlone() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+
+        job.compact();
+
+        check(entityManager.find(AuditLog.class, 1L).getFirstNumber()).isNull();
+        check(entityManager.find(AuditLog.class, 2L).getFirstNumber()).isNull();
+    }
+
+    private void age(ZonedDateTime time) {
+        transactionalService.inTransaction(() -> entityManager
+                .createQuery("update AuditLog a set a.time = :time")
+                .setParameter("time", time)
+                .executeUpdate());
+    }
+}
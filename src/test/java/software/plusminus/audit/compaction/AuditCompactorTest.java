@@ -0,0 +1,103 @@
+package software.plusminus.audit.compaction;
+
+import org.junit.Test;
+import software.plusminus.audit.model.AuditChange;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.crud.CrudAction;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditCompactorTest {
+
+    private static final ZonedDateTime TIME = ZonedDateTime.parse("2019-03-20T15:15:01Z");
+
+    private AuditCompactor compactor = new AuditCompactor(Duration.ofHours(1));
+
+    @Test
+    public void collapsesEntityRowsWithinBucket() {
+        AuditLog<?> created = auditLog(1L, 1L, CrudAction.CREATE, TIME, "Phone");
+        created.setChanges(Collections.singletonMap("myField", new AuditChange(null, "a")));
+        AuditLog<?> updated = auditLog(3L, 1L, CrudAction.UPDATE, TIME.plusMinutes(10), "Laptop");
+        updated.setChanges(Collections.singletonMap("myField", new AuditChange("a", "b")));
+        AuditLog<?> other = auditLog(4L, 2L, CrudAction.UPDATE, TIME.plusMinutes(20), "Phone");
+        AuditLog<?> nextBucket = auditLog(5L, 2L, CrudAction.UPDATE, TIME.plusHours(1), "Phone");
+        List<AuditLog<?>> rows = Arrays.asList(created, updated, other, nextBucket);
+
+        List<Long> deleted = compactor.compact(rows);
+
+        assertThat(deleted).containsExactly(1L);
+        assertThat(updated.getFirstNumber()).isEqualTo(1L);
+        assertThat(updated.getFirstAction()).isEqualTo(CrudAction.CREATE);
+        assertThat(updated.getDevices()).isEqualTo("Phone,Laptop");
+        assertThat(updated.getChanges()).containsEntry("myField", new AuditChange(null, "b"));
+        assertThat(other.getFirstNumber()).isEqualTo(4L);
+        assertThat(nextBucket.getFirstNumber()).isEqualTo(5L);
+    }
+
+    @Test
+    public void leavesLastGroupOfFullBatchForNextBatch() {
+        List<AuditLog<?>> batch = Arrays.asList(
+                auditLog(1L, 1L, CrudAction.UPDATE, TIME, "Phone"),
+                auditLog(2L, 2L, CrudAction.UPDATE, TIME, "Phone"),
+                auditLog(3L, 2L, CrudAction.UPDATE, TIME, "Phone"));
+
+        assertThat(compactor.completeGroups(batch)).isEqualTo(1);
+        assertThat(compactor.completeGroups(batch.subList(1, 3))).isEqualTo(2);
+    }
+
+    @Test
+    public void marksDevicesThatDoNotFit() {
+        List<AuditLog<?>> rows = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            rows.add(auditLog((long) i, 1L, CrudAction.UPDATE, TIME, String.format("Device-%020d", i)));
+        }
+
+        compactor.compact(rows);
+        String devices = rows.get(rows.size() - 1).getDevices();
+
+        assertThat(devices.length()).isLessThanOrEqualTo(AuditCompactor.DEVICES_LENGTH);
+        assertThat(devices).startsWith("Device-00000000000000000001,").endsWith("," + AuditCompactor.MORE_DEVICES);
+    }
+
+    @Test
+    public void mergesSummaryWithRestOfGroup() {
+        AuditLog<?> summary = auditLog(2L, 1L, CrudAction.UPDATE, TIME, "Phone");
+        summary.setFirstNumber(1L);
+        summary.setFirstAction(CrudAction.CREATE);
+        summary.setDevices("Phone,Laptop");
+        AuditLog<?> updated = auditLog(3L, 1L, CrudAction.UPDATE, TIME.plusMinutes(10), "Tablet");
+
+        List<Long> deleted = compactor.compact(Arrays.asList(summary, updated));
+
+        assertThat(deleted).containsExactly(2L);
+        assertThat(updated.getFirstNumber()).isEqualTo(1L);
+        assertThat(updated.getFirstAction()).isEqualTo(CrudAction.CREATE);
+        assertThat(updated.getDevices()).isEqualTo("Phone,Laptop,Tablet");
+    }
+
+    @Test
+    public void cutoffIsAlignedToBucket() {
+        ZonedDateTime cutoff = compactor.cutoff(TIME, Duration.ofDays(1));
+
+        assertThat(cutoff.toInstant()).isEqualTo(ZonedDateTime.parse("2019-03-19T15:00:00Z").toInstant());
+    }
+
+    private static AuditLog<?> auditLog(Long number, Long entityId, CrudAction action, ZonedDateTime time,
+                                        String device) {
+        AuditLog<?> auditLog = new AuditLog<>();
+        auditLog.setNumber(number);
+        auditLog.setEntityType("some.Entity");
+        auditLog.setEntityId(entityId);
+        auditLog.setAction(action);
+        auditLog.setTime(time);
+        auditLog.setDevice(device);
+        return auditLog;
+    }
+}
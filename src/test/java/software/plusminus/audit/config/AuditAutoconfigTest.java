@@ -0,0 +1,31 @@
+package software.plusminus.audit.config;
+
+import org.hibernate.boot.model.TypeContributor;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.TypeContributorList;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static software.plusminus.check.Checks.check;
+
+public class AuditAutoconfigTest {
+
+    @Test
+    public void entityTypeContributorIsAppended() {
+        TypeContributor present = mock(TypeContributor.class);
+        Map<String, Object> hibernateProperties = new HashMap<>();
+        hibernateProperties.put(EntityManagerFactoryBuilderImpl.TYPE_CONTRIBUTORS,
+                (TypeContributorList) () -> Collections.singletonList(present));
+
+        new AuditAutoconfig.AuditEntityTypeConfig().auditEntityTypeNameCustomizer().customize(hibernateProperties);
+        TypeContributorList contributors = (TypeContributorList) hibernateProperties.get(
+                EntityManagerFactoryBuilderImpl.TYPE_CONTRIBUTORS);
+
+        check(contributors.getTypeContributors()).hasSize(2);
+        check(contributors.getTypeContributors().get(0) == present).is(true);
+    }
+}
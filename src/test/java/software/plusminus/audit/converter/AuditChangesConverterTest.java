@@ -0,0 +1,65 @@
+package software.plusminus.audit.converter;
+
+import org.junit.Test;
+import software.plusminus.audit.model.AuditChange;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditChangesConverterTest {
+
+    @Test
+    public void roundTrip() {
+        Map<String, AuditChange> changes = new LinkedHashMap<>();
+        changes.put("myField", new AuditChange("first", "second"));
+        changes.put("amount", new AuditChange(null, 1));
+
+        byte[] encoded = AuditChangesConverter.encode(changes);
+
+        assertThat(AuditChangesConverter.decode(encoded)).isEqualTo(changes);
+    }
+
+    @Test
+    public void dropsValuesIfChangesDontFit() {
+        Map<String, AuditChange> changes = new LinkedHashMap<>();
+        changes.put("myField", new AuditChange("first", randomText(3 * AuditChangesConverter.MAX_LENGTH)));
+        changes.put("amount", new AuditChange(1, 2));
+
+        byte[] encoded = AuditChangesConverter.encode(changes);
+
+        assertThat(encoded.length).isLessThanOrEqualTo(AuditChangesConverter.MAX_LENGTH);
+        assertThat(AuditChangesConverter.decode(encoded))
+                .containsOnlyKeys("myField", "amount")
+                .containsEntry("myField", new AuditChange())
+                .containsEntry("amount", new AuditChange());
+    }
+
+    @Test
+    public void truncatesFieldsIfFieldNamesDontFit() {
+        Map<String, AuditChange> changes = new LinkedHashMap<>();
+        changes.put("myField", new AuditChange("first", "second"));
+        for (int i = 0; i < 100; i++) {
+            changes.put(randomText(100) + i, new AuditChange(1, 2));
+        }
+
+        byte[] encoded = AuditChangesConverter.encode(changes);
+        Map<String, AuditChange> decoded = AuditChangesConverter.decode(encoded);
+
+        assertThat(encoded.length).isLessThanOrEqualTo(AuditChangesConverter.MAX_LENGTH);
+        assertThat(decoded).containsEntry("myField", new AuditChange())
+                .containsEntry(AuditChangesConverter.MORE_FIELDS, new AuditChange())
+                .hasSizeLessThan(changes.size());
+    }
+
+    private static String randomText(int length) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
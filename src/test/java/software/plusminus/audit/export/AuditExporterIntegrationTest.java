@@ -0,0 +1,137 @@
+package software.plusminus.audit.export;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.repository.AuditEntityTypeDictionary;
+import software.plusminus.audit.routing.AuditTableRouting;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.audit.util.AuditLogJson;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import javax.sql.DataSource;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = {
+        "plusminus.audit.export.chunk-size=2",
+        "plusminus.audit.export.threads=2"
+})
+public class AuditExporterIntegrationTest extends IntegrationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService auditLogService;
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private AuditEntityTypeDictionary entityTypes;
+
+    @Autowired
+    private AuditExporter exporter;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void exportsAllChunksAndResumes() throws IOException {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        entity.setTenant("Export tenant");
+        List<Long> numbers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CrudAction action = i == 0 ? CrudAction.CREATE : CrudAction.UPDATE;
+            numbers.add(transactionalService.inTransaction(() -> auditLogService.log(entity, action)).getNumber());
+        }
+        AuditExportRequest request = new AuditExportRequest();
+        request.setDirectory(folder.newFolder().toPath());
+        request.setTenant("Export tenant");
+
+        long exported = exporter.export(request);
+
+        check(exported).is(5L);
+        List<AuditLog<?>> auditLogs = readAll(request.getDirectory());
+        check(auditLogs.stream().map(AuditLog::getNumber).collect(Collectors.toList())).is(numbers);
+        check(auditLogs.get(4).isCurrent()).is(true);
+        check(exporter.export(request)).is(0L);
+    }
+
+    @Test
+    public void exportsCsvForOtherTenantOnly() throws IOException {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        transactionalService.inTransaction(() -> auditLogService.log(entity, CrudAction.CREATE));
+        AuditExportRequest request = new AuditExportRequest();
+        request.setDirectory(folder.newFolder().toPath());
+        request.setFormat(AuditExportFormat.CSV);
+        request.setTenant("Other tenant");
+
+        check(exporter.export(request)).is(0L);
+        check(Files.exists(request.getDirectory().resolve(AuditExportCheckpoint.FILE_NAME))).is(true);
+    }
+
+    @Test(expected = AuditException.class)
+    public void routedExportRequiresTenant() throws IOException {
+        AuditTableRouting routing = mock(AuditTableRouting.class);
+        when(routing.isEnabled()).thenReturn(true);
+        AuditExporter routedExporter = new AuditExporter(dataSource, routing, new AuditProperties(), entityTypes);
+        AuditExportRequest request = new AuditExportRequest();
+        request.setDirectory(folder.newFolder().toPath());
+
+        routedExporter.export(request);
+    }
+
+    private List<AuditLog<?>> readAll(Path directory) throws IOException {
+        List<AuditLog<?>> auditLogs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".ndjson.gz")).sorted()
+                    .collect(Collectors.toList())) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                    reader.lines().map(AuditLogJson::fromJson).forEach(auditLogs::add);
+                }
+            }
+        }
+        return auditLogs;
+    }
+}
@@ -0,0 +1,26 @@
+package software.plusminus.audit.fixtures;
+
+import lombok.Data;
+import software.plusminus.audit.annotation.Auditable;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+@Data
+@Auditable(changes = true, fields = {"myField", "amount"})
+@Entity
+public class ChangeTrackedEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private String myField;
+    private Integer amount;
+    private String comment;
+    @Version
+    private Long version;
+
+}
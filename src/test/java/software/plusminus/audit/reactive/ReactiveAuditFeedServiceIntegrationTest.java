@@ -0,0 +1,92 @@
+package software.plusminus.audit.reactive;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogView;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = "plusminus.audit.reactive.page-size=2")
+public class ReactiveAuditFeedServiceIntegrationTest extends IntegrationTest {
+
+    private static final String TENANT = "Some tenant";
+    private static final List<String> TYPES = Collections.singletonList(TestEntity.class.getName());
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService auditLogService;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ReactiveAuditFeedService service;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void streamsAllPages() {
+        List<Long> numbers = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+            entity.setId(id);
+            numbers.add(transactionalService.inTransaction(() -> auditLogService.log(entity, CrudAction.CREATE))
+                    .getNumber());
+        }
+
+        List<AuditLog<?>> changes = service.findChanges(TENANT, TYPES, null, 0).collectList().block();
+        List<AuditLogView> views = service.findChangeViews(TENANT, TYPES, null, numbers.get(2))
+                .collectList().block();
+
+        check(changes.stream().map(AuditLog::getNumber).collect(Collectors.toList())).is(numbers);
+        check(views.stream().map(AuditLogView::getNumber).collect(Collectors.toList()))
+                .is(numbers.subList(3, 5));
+        check(service.findChanges("Other tenant", TYPES, null, 0).collectList().block()).isEmpty();
+    }
+
+    @Test
+    public void emitsAuditLogsWithEntities() {
+        TestEntity entity = new TestEntity();
+        entity.setMyField("Some value");
+        entity.setTenant(TENANT);
+        transactionalService.inTransaction(() -> entityManager.persist(entity));
+
+        List<AuditLog<?>> changes = service.findChanges(TENANT, TYPES, null, 0).collectList().block();
+
+        check(changes).hasSize(1);
+        TestEntity loaded = (TestEntity) changes.get(0).getEntity();
+        check(loaded.getId()).is(entity.getId());
+        check(loaded.getMyField()).is("Some value");
+    }
+}
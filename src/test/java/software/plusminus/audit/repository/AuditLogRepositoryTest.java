@@ -3,10 +3,13 @@ package software.plusminus.audit.repository;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import software.plusminus.audit.fixtures.TestEntity;
 import software.plusminus.audit.fixtures.TransactionalService;
 import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.model.AuditLogView;
 import software.plusminus.check.util.JsonUtils;
 import software.plusminus.test.IntegrationTest;
 import software.plusminus.test.util.TestEntityManager;
@@ -14,6 +17,8 @@ import software.plusminus.test.util.TestEntityManager;
 import java.util.Collections;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static software.plusminus.check.Checks.check;
 
@@ -76,6 +81,85 @@ public class AuditLogRepositoryTest extends IntegrationTest {
         check(result).is(auditLogs.get(2), auditLogs.get(5), auditLogs.get(8));
     }
 
+    @Test
+    public void findSliceAfterNumber() {
+        Slice<AuditLog<?>> result = repository.findByEntityTypeInAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+                Collections.singletonList(TestEntity.class.getName()),
+                auditLogs.get(2).getNumber(),
+                PageRequest.of(0, 1));
+
+        check(result.getContent()).hasSize(1);
+        check(result.getContent().get(0)).is(auditLogs.get(5));
+        check(result.hasNext()).is(true);
+    }
+
+    @Test
+    public void streamIgnoringDevice() {
+        List<AuditLog<?>> result = transactionalService.inTransaction(() -> repository
+                .streamByEntityTypeInAndDeviceIsNotAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+                        Collections.singletonList(TestEntity.class.getName()), "Device 2", 0L)
+                .collect(Collectors.toList()));
+
+        check(result).is(auditLogs.get(2), auditLogs.get(8));
+    }
+
+    @Test
+    public void findViewsIgnoringDevice() {
+        List<AuditLogView> result = repository
+                .findViewsByEntityTypeInAndDeviceIsNotAndNumberGreaterThanAndCurrentTrueOrderByNumber(
+                        Collections.singletonList(TestEntity.class.getName()),
+                        "Device 2",
+                        0L,
+                        PageRequest.of(0, 10))
+                .getContent();
+
+        check(result).hasSize(2);
+        check(result.get(0).getNumber()).is(auditLogs.get(2).getNumber());
+        check(result.get(0).getEntityId()).is(1L);
+        check(result.get(0).getAction()).is(auditLogs.get(2).getAction());
+        check(result.get(1).getNumber()).is(auditLogs.get(8).getNumber());
+        check(result.get(1).getEntityType()).is(TestEntity.class.getName());
+    }
+
+    @Test
+    public void unmarkCurrent() {
+        int otherTenant = transactionalService.inTransaction(
+                () -> repository.unmarkCurrent(TestEntity.class.getName(), 2L, "Other tenant"));
+        int updated = transactionalService.inTransaction(
+                () -> repository.unmarkCurrent(TestEntity.class.getName(), 2L, ""));
+
+        check(otherTenant).is(0);
+        check(updated).is(1);
+        check(repository.findByEntityTypeAndEntityIdAndCurrentTrue(TestEntity.class, 2L)).hasSize(0);
+        check(repository.findByEntityTypeAndEntityIdAndCurrentTrue(TestEntity.class, 3L)).hasSize(1);
+    }
+
+    @Test
+    public void findAsOf() {
+        List<String> types = Collections.singletonList(TestEntity.class.getName());
+        Long asOf = auditLogs.get(4).getNumber();
+
+        Slice<AuditLog<?>> result = repository.findAsOf(types, "", asOf, 0L, PageRequest.of(0, 10));
+
+        check(result.getContent()).is(auditLogs.get(2), auditLogs.get(4));
+        check(result.hasNext()).is(false);
+    }
+
+    @Test
+    public void streamAsOfAfterLastSeen() {
+        List<String> types = Collections.singletonList(TestEntity.class.getName());
+        Long asOf = auditLogs.get(7).getNumber();
+        Long lastSeen = auditLogs.get(2).getNumber();
+
+        List<AuditLog<?>> result = transactionalService.inTransaction(() -> {
+            try (Stream<AuditLog<?>> stream = repository.streamAsOf(types, "", asOf, lastSeen)) {
+                return stream.collect(Collectors.toList());
+            }
+        });
+
+        check(result).is(auditLogs.get(5), auditLogs.get(7));
+    }
+
     private void prepareEntityAndCommits(TestEntity entity) {
         int index = entities.indexOf(entity);
         auditLogs.subList(index * 3, index * 3 + 3)
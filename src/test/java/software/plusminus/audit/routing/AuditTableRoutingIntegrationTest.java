@@ -0,0 +1,94 @@
+package software.plusminus.audit.routing;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+/**
+ * The default DDL is MySQL only, so the tenant tables are copied with H2 statements here.
+ */
+@TestPropertySource(properties = {
+        "plusminus.audit.write-mode=write-behind",
+        "plusminus.audit.routing.mode=table",
+        "plusminus.audit.routing.create-table-sql=create table if not exists {table}"
+                + " as select * from {template} where 1 = 0;"
+                + " alter table {table} alter column number bigint auto_increment"
+})
+public class AuditTableRoutingIntegrationTest extends IntegrationTest {
+
+    private static final String TENANT = "Some tenant";
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService service;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuditTableRouting routing;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void writesAndReadsTenantTable() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        AuditLog<?> updated = routing.withTenant(TENANT, () -> transactionalService.inTransaction(
+                () -> entityManager.find(AuditLog.class, 2L)));
+
+        check(count("audit_log_some_tenant")).is(2);
+        check(count("audit_log_some_tenant where current = true")).is(1);
+        check(count("audit_log")).is(0);
+        check(updated.getAction()).is(CrudAction.UPDATE);
+        check(updated.isCurrent()).is(true);
+    }
+
+    @Test
+    public void auditLogsWithoutTenantStayInSharedTable() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        entity.setTenant(null);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+
+        check(count("audit_log")).is(1);
+        check(transactionalService.inTransaction(() -> entityManager.find(AuditLog.class, 1L))).isNotNull();
+    }
+
+    private int count(String from) {
+        return jdbcTemplate.queryForObject("select count(*) from " + from, Integer.class);
+    }
+}
@@ -0,0 +1,84 @@
+package software.plusminus.audit.routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.config.AuditRoutingMode;
+import software.plusminus.context.Context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuditTableRoutingTest {
+
+    private static final String SELECT = "select auditlog0_.number from audit_log auditlog0_"
+            + " where exists (select 1 from audit_current c where c.number = auditlog0_.number)";
+
+    private AuditTableProvisioner provisioner = mock(AuditTableProvisioner.class);
+    @SuppressWarnings("unchecked")
+    private Context<String> tenantContext = mock(Context.class);
+    private AuditProperties properties = new AuditProperties();
+
+    @Before
+    public void before() {
+        when(tenantContext.get()).thenReturn("Big Tenant");
+    }
+
+    @Test
+    public void routesToTenantTables() {
+        AuditTableRouting routing = routing(AuditRoutingMode.TABLE);
+
+        assertThat(routing.route(SELECT)).isEqualTo("select auditlog0_.number from audit_log_big_tenant auditlog0_"
+                + " where exists (select 1 from audit_current_big_tenant c where c.number = auditlog0_.number)");
+        verify(provisioner, never()).ensure(any(), any(), any());
+    }
+
+    @Test
+    public void provisionsTenantTablesOutsideStatements() {
+        AuditTableRouting routing = routing(AuditRoutingMode.TABLE);
+
+        routing.provision();
+        routing.withTenant("other", () -> null);
+
+        verify(provisioner).ensure("audit_log_big_tenant", "audit_log", null);
+        verify(provisioner).ensure("audit_current_big_tenant", "audit_current", null);
+        verify(provisioner).ensure("audit_log_other", "audit_log", null);
+        verify(provisioner).ensure("audit_current_other", "audit_current", null);
+    }
+
+    @Test
+    public void routesToTenantSchema() {
+        AuditTableRouting routing = routing(AuditRoutingMode.SCHEMA);
+
+        routing.provision();
+
+        assertThat(routing.route("delete from audit_current where entity_id = ?"))
+                .isEqualTo("delete from audit_big_tenant.audit_current where entity_id = ?");
+        verify(provisioner).ensure("audit_big_tenant.audit_log", "audit_log", "audit_big_tenant");
+    }
+
+    @Test
+    public void explicitTenantOverridesContext() {
+        AuditTableRouting routing = routing(AuditRoutingMode.TABLE);
+
+        assertThat(routing.withTenant("", () -> routing.route(SELECT))).isEqualTo(SELECT);
+        assertThat(routing.withTenant("other", () -> routing.route("insert into audit_log values (?)")))
+                .isEqualTo("insert into audit_log_other values (?)");
+    }
+
+    @Test
+    public void sharedTablesWithoutRouting() {
+        AuditTableRouting routing = routing(AuditRoutingMode.NONE);
+
+        assertThat(routing.route(SELECT)).isEqualTo(SELECT);
+    }
+
+    private AuditTableRouting routing(AuditRoutingMode mode) {
+        properties.getRouting().setMode(mode);
+        return new AuditTableRouting(new TenantAuditTableRouter(properties), provisioner, tenantContext, properties);
+    }
+}
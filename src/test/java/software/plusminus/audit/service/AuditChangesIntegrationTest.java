@@ -0,0 +1,139 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import software.plusminus.audit.fixtures.ChangeTrackedEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditChange;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.data.service.DataService;
+import software.plusminus.test.IntegrationTest;
+
+import java.util.Map;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+public class AuditChangesIntegrationTest extends IntegrationTest {
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @MockBean
+    private TransactionIdProvider transactionIdProvider;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private DataService dataService;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AuditLogService service;
+
+    private Long id;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        when(transactionIdProvider.currentTransactionId()).thenAnswer(invocation -> UUID.randomUUID());
+        Context.init();
+        id = transactionalService.inTransaction(() -> {
+            ChangeTrackedEntity entity = new ChangeTrackedEntity();
+            entity.setMyField("first");
+            entity.setAmount(1);
+            entityManager.persist(entity);
+            service.log(entity, CrudAction.CREATE);
+            return entity.getId();
+        });
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void create() {
+        Map<String, AuditChange> changes = entityManager.find(AuditLog.class, 1L).getChanges();
+
+        check(changes.keySet()).is("myField", "amount");
+        check(changes.get("myField")).is(new AuditChange(null, "first"));
+        check(changes.get("amount")).is(new AuditChange(null, 1));
+    }
+
+    @Test
+    public void update() {
+        transactionalService.inTransaction(() -> {
+            ChangeTrackedEntity entity = entityManager.find(ChangeTrackedEntity.class, id);
+            entity.setMyField("second");
+            entity.setComment("not tracked");
+            service.log(entity, CrudAction.UPDATE);
+        });
+        Map<String, AuditChange> changes = entityManager.find(AuditLog.class, 2L).getChanges();
+
+        check(changes.keySet()).is("myField");
+        check(changes.get("myField")).is(new AuditChange("first", "second"));
+    }
+
+    @Test
+    public void updateWithoutChanges() {
+        AuditLog<?> auditLog = transactionalService.inTransaction(() -> {
+            ChangeTrackedEntity entity = entityManager.find(ChangeTrackedEntity.class, id);
+            entity.setComment("not tracked");
+            return service.log(entity, CrudAction.UPDATE);
+        });
+
+        check(auditLog).isNull();
+        check(entityManager.find(AuditLog.class, 2L)).isNull();
+        check(entityManager.find(AuditLog.class, 1L).isCurrent()).is(true);
+    }
+
+    @Test
+    public void updateFlushedBeforeLog() {
+        transactionalService.inTransaction(() -> {
+            ChangeTrackedEntity entity = entityManager.find(ChangeTrackedEntity.class, id);
+            entity.setMyField("second");
+            entityManager.flush();
+            entity.setAmount(2);
+            service.log(entity, CrudAction.UPDATE);
+        });
+        Map<String, AuditChange> changes = entityManager.find(AuditLog.class, 2L).getChanges();
+
+        check(changes.keySet()).is("myField", "amount");
+        check(changes.get("myField")).is(new AuditChange("first", "second"));
+        check(changes.get("amount")).is(new AuditChange(1, 2));
+    }
+
+    @Test
+    public void updateThroughListener() {
+        ChangeTrackedEntity entity = transactionalService.inTransaction(
+                () -> entityManager.find(ChangeTrackedEntity.class, id));
+        entity.setMyField("second");
+
+        transactionalService.inTransaction(() -> dataService.update(entity));
+        Map<String, AuditChange> changes = entityManager.find(AuditLog.class, 2L).getChanges();
+
+        check(changes.keySet()).is("myField");
+        check(changes.get("myField")).is(new AuditChange("first", "second"));
+    }
+
+    @Test
+    public void detachedEntityWithoutManagedCopyIsLoggedWithoutChanges() {
+        ChangeTrackedEntity entity = transactionalService.inTransaction(
+                () -> entityManager.find(ChangeTrackedEntity.class, id));
+        entity.setMyField("second");
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        AuditLog<?> auditLog = entityManager.find(AuditLog.class, 2L);
+
+        check(auditLog.getAction()).is(CrudAction.UPDATE);
+        check(auditLog.getChanges()).isNull();
+    }
+}
@@ -0,0 +1,97 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.InnerEntity;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.context.Context;
+import software.plusminus.test.IntegrationTest;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = "plusminus.audit.batch-size=1")
+public class AuditLogEntityLoaderIntegrationTest extends IntegrationTest {
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AuditLogEntityLoader loader;
+
+    private TestEntity first;
+    private TestEntity second;
+    private InnerEntity inner;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+        first = persist(new TestEntity());
+        second = persist(new TestEntity());
+        inner = persist(new InnerEntity());
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void loadsEntitiesOfAllTypes() {
+        List<AuditLog<Object>> auditLogs = Arrays.asList(
+                auditLog(TestEntity.class.getName(), first.getId()),
+                auditLog(InnerEntity.class.getName(), inner.getId()),
+                auditLog(TestEntity.class.getName(), second.getId()),
+                auditLog(TestEntity.class.getName(), first.getId()));
+
+        transactionalService.inTransaction(() -> {
+            loader.load(auditLogs);
+
+            check(auditLogs.get(0).getEntity()).is(first);
+            check(auditLogs.get(1).getEntity()).is(inner);
+            check(auditLogs.get(2).getEntity()).is(second);
+            check(auditLogs.get(3).getEntity() == auditLogs.get(0).getEntity()).is(true);
+            check(entityManager.contains(auditLogs.get(0).getEntity())).is(true);
+            check(entityManager.contains(auditLogs.get(1).getEntity())).is(true);
+        });
+    }
+
+    @Test
+    public void skipsUnknownTypesAndMissingEntities() {
+        List<AuditLog<Object>> auditLogs = Arrays.asList(
+                auditLog("com.example.Removed", first.getId()),
+                auditLog(TestEntity.class.getName(), Long.MAX_VALUE));
+
+        transactionalService.inTransaction(() -> loader.load(auditLogs));
+
+        check(auditLogs.get(0).getEntity()).isNull();
+        check(auditLogs.get(1).getEntity()).isNull();
+    }
+
+    private <T> T persist(T entity) {
+        transactionalService.inTransaction(() -> entityManager.persist(entity));
+        return entity;
+    }
+
+    private static AuditLog<Object> auditLog(String entityType, Long entityId) {
+        AuditLog<Object> auditLog = new AuditLog<>();
+        auditLog.setEntityType(entityType);
+        auditLog.setEntityId(entityId);
+        return auditLog;
+    }
+}
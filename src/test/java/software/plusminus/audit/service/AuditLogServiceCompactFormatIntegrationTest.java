@@ -0,0 +1,133 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.repository.AuditEntityTypeDictionary;
+import software.plusminus.audit.repository.AuditLogBatchWriter;
+import software.plusminus.audit.repository.AuditLogRepository;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = "plusminus.audit.compact-format=true")
+public class AuditLogServiceCompactFormatIntegrationTest extends IntegrationTest {
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @MockBean
+    private TransactionIdProvider transactionIdProvider;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogBatchWriter batchWriter;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private AuditLogRepository repository;
+    @Autowired
+    private AuditEntityTypeDictionary dictionary;
+
+    @Autowired
+    private AuditLogService service;
+
+    private UUID transactionId = UUID.fromString("3a37e67d-a8b2-4c35-9e6f-a4e4b686ffb5");
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        when(transactionIdProvider.currentTransactionId()).thenReturn(transactionId);
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void log() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        AuditLog<?> logged = transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        entityManager.clear();
+        AuditLog<?> auditLog = entityManager.find(AuditLog.class, 1L);
+
+        check(auditLog.getTransactionId()).is(transactionId);
+        check(auditLog.getTime().toInstant().toEpochMilli()).is(logged.getTime().toInstant().toEpochMilli());
+        check(auditLog.getEntityType()).is(TestEntity.class.getName());
+    }
+
+    @Test
+    public void entityTypeIsDictionaryId() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        Integer typeId = jdbcTemplate.queryForObject("select entity_type from audit_log where number = 1",
+                Integer.class);
+        String typeName = jdbcTemplate.queryForObject("select name from audit_entity_type where id = ?",
+                String.class, typeId);
+        List<AuditLog<TestEntity>> current = transactionalService.inTransaction(
+                () -> repository.findByEntityTypeAndEntityIdAndCurrentTrue(TestEntity.class, entity.getId()));
+
+        check(typeName).is(TestEntity.class.getName());
+        check(current).hasSize(1);
+        check(current.get(0).getNumber()).is(2L);
+    }
+
+    @Test
+    public void batchWrite() {
+        AuditLog<?> written = new AuditLog<>();
+        written.setEntityType(TestEntity.class.getName());
+        written.setEntityId(1L);
+        written.setTime(ZonedDateTime.now());
+        written.setDevice("TestDevice");
+        written.setUsername("TestUser");
+        written.setAction(CrudAction.CREATE);
+        written.setTransactionId(transactionId);
+
+        transactionalService.inTransaction(() -> batchWriter.write(Collections.singletonList(written)));
+        AuditLog<?> auditLog = entityManager.find(AuditLog.class, 1L);
+
+        check(auditLog.getTransactionId()).is(transactionId);
+        check(auditLog.getTime().toInstant().toEpochMilli()).is(written.getTime().toInstant().toEpochMilli());
+    }
+
+    @Test
+    public void entityTypeRegisteredByOtherInstanceIsRead() {
+        jdbcTemplate.update("insert into audit_entity_type (name) values (?)", "OtherInstanceType");
+        Integer id = jdbcTemplate.queryForObject("select id from audit_entity_type where name = ?",
+                Integer.class, "OtherInstanceType");
+
+        String name = transactionalService.inTransaction(() -> dictionary.name(id));
+
+        check(name).is("OtherInstanceType");
+        check(dictionary.id("OtherInstanceType")).is(id);
+    }
+
+    @Test(expected = AuditException.class)
+    public void unknownEntityTypeId() {
+        dictionary.name(-1);
+    }
+}
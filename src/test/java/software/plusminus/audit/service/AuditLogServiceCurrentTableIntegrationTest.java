@@ -0,0 +1,185 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditCurrent;
+import software.plusminus.audit.model.AuditCurrentId;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.repository.AuditCurrentRepository;
+import software.plusminus.audit.repository.AuditLogBatchWriter;
+import software.plusminus.audit.repository.AuditLogRepository;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = "plusminus.audit.current-table=true")
+public class AuditLogServiceCurrentTableIntegrationTest extends IntegrationTest {
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private AuditFeedService feedService;
+    @Autowired
+    private AuditLogRepository repository;
+    @Autowired
+    private AuditCurrentRepository currentRepository;
+    @Autowired
+    private AuditCurrentUpdater currentUpdater;
+    @Autowired
+    private AuditLogBatchWriter batchWriter;
+
+    @Autowired
+    private AuditLogService service;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void historyIsAppendOnly() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        AuditLog<?> auditLogFirst = entityManager.find(AuditLog.class, 1L);
+        AuditCurrent current = entityManager.find(AuditCurrent.class,
+                AuditCurrentId.of("Some tenant", TestEntity.class.getName(), entity.getId()));
+
+        check(auditLogFirst.isCurrent()).is(false);
+        check(current.getNumber()).is(2L);
+        check(current.getAction()).is(CrudAction.UPDATE);
+        check(current.getDevice()).is("TestDevice");
+    }
+
+    @Test
+    public void createAndDeleteInTheSameTransaction() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> {
+            service.log(entity, CrudAction.CREATE);
+            service.log(entity, CrudAction.DELETE);
+        });
+
+        check(entityManager.find(AuditCurrent.class,
+                AuditCurrentId.of("Some tenant", TestEntity.class.getName(), entity.getId()))).isNull();
+    }
+
+    @Test
+    public void currentRowIsPerTenant() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        TestEntity otherTenantEntity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        otherTenantEntity.setTenant("Other tenant");
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(otherTenantEntity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        AuditCurrent current = entityManager.find(AuditCurrent.class,
+                AuditCurrentId.of("Some tenant", TestEntity.class.getName(), entity.getId()));
+        AuditCurrent otherTenantCurrent = entityManager.find(AuditCurrent.class,
+                AuditCurrentId.of("Other tenant", TestEntity.class.getName(), entity.getId()));
+
+        check(current.getNumber()).is(3L);
+        check(current.getAction()).is(CrudAction.UPDATE);
+        check(otherTenantCurrent.getNumber()).is(2L);
+        check(otherTenantCurrent.getAction()).is(CrudAction.CREATE);
+    }
+
+    @Test
+    public void currentTrueMethodsAreReplacedByCurrentRepository() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        List<AuditLog<TestEntity>> current = transactionalService.inTransaction(
+                () -> currentRepository.<TestEntity>findCurrent(TestEntity.class.getName(), entity.getId()));
+
+        check(repository.findByEntityTypeAndEntityIdAndCurrentTrue(TestEntity.class, entity.getId())).isEmpty();
+        check(current).hasSize(1);
+        check(current.get(0).getNumber()).is(2L);
+    }
+
+    @Test
+    public void feedReadsCurrentTable() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        List<AuditLog<?>> changes = feedService.findChanges(
+                Collections.singletonList(TestEntity.class.getName()), null, 0L, 10)
+                .getContent();
+
+        check(changes).hasSize(1);
+        check(changes.get(0).getNumber()).is(2L);
+    }
+
+    @Test
+    public void olderAuditLogDoesNotOverwriteCurrentRow() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        AuditLog<?> created = transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        transactionalService.inTransaction(() -> currentUpdater.update(created));
+        AuditCurrent current = entityManager.find(AuditCurrent.class,
+                AuditCurrentId.of("Some tenant", TestEntity.class.getName(), entity.getId()));
+
+        check(current.getNumber()).is(2L);
+        check(current.getAction()).is(CrudAction.UPDATE);
+    }
+
+    @Test
+    public void batchWriterUpdatesPresentAndInsertsMissingCurrentRows() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> batchWriter.write(Arrays.asList(
+                auditLog(entity.getId(), CrudAction.UPDATE), auditLog(2L, CrudAction.CREATE))));
+        AuditCurrent present = entityManager.find(AuditCurrent.class,
+                AuditCurrentId.of("Some tenant", TestEntity.class.getName(), entity.getId()));
+        AuditCurrent missing = entityManager.find(AuditCurrent.class,
+                AuditCurrentId.of("Some tenant", TestEntity.class.getName(), 2L));
+
+        check(present.getNumber()).is(2L);
+        check(present.getAction()).is(CrudAction.UPDATE);
+        check(missing.getNumber()).is(3L);
+        check(missing.getAction()).is(CrudAction.CREATE);
+    }
+
+    private static AuditLog<?> auditLog(Long entityId, CrudAction action) {
+        AuditLog<Object> auditLog = new AuditLog<>();
+        auditLog.setTenant("Some tenant");
+        auditLog.setEntityType(TestEntity.class.getName());
+        auditLog.setEntityId(entityId);
+        auditLog.setTime(ZonedDateTime.now());
+        auditLog.setUsername("TestUser");
+        auditLog.setDevice("TestDevice");
+        auditLog.setAction(action);
+        return auditLog;
+    }
+}
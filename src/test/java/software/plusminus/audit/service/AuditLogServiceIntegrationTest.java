@@ -15,6 +15,9 @@ import software.plusminus.crud.CrudAction;
 import software.plusminus.data.service.DataService;
 import software.plusminus.test.IntegrationTest;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import javax.persistence.EntityManager;
 
@@ -159,6 +162,44 @@ public class AuditLogServiceIntegrationTest extends IntegrationTest {
         checkCurrent();
     }
 
+    @Test
+    public void logAll() {
+        TestEntity first = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        TestEntity second = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        second.setId(2L);
+
+        transactionalService.inTransaction(() -> service.log(first, CrudAction.CREATE));
+        List<AuditLog<?>> auditLogs = transactionalService.inTransaction(
+                () -> service.logAll(Arrays.asList(first, second, first), CrudAction.UPDATE));
+        AuditLog<?> auditLogFirst = entityManager.find(AuditLog.class, 1L);
+        AuditLog<?> auditLogSecond = entityManager.find(AuditLog.class, 2L);
+        AuditLog<?> auditLogThird = entityManager.find(AuditLog.class, 3L);
+
+        check(auditLogs).hasSize(3);
+        check(auditLogs.get(2) == auditLogs.get(0)).is(true);
+        check(auditLogFirst.isCurrent()).is(false);
+        check(auditLogSecond.isCurrent()).is(true);
+        check(auditLogSecond.getEntityId()).is(1L);
+        check(auditLogSecond.getAction()).is(CrudAction.UPDATE);
+        check(auditLogSecond.getUsername()).is("TestUser");
+        check(auditLogSecond.getTransactionId()).is(transactionId);
+        check(auditLogThird.isCurrent()).is(true);
+        check(auditLogThird.getEntityId()).is(2L);
+        check(entityManager.find(AuditLog.class, 4L)).isNull();
+    }
+
+    @Test
+    public void logAllCreateAndDelete() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> {
+            service.logAll(Collections.singletonList(entity), CrudAction.CREATE);
+            service.log(entity, CrudAction.DELETE);
+        });
+
+        check(entityManager.find(AuditLog.class, 1L)).isNull();
+    }
+
     private void checkAuditLog(CrudAction action) {
         TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
 
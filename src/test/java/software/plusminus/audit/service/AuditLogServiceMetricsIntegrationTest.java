@@ -0,0 +1,116 @@
+package software.plusminus.audit.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.repository.AuditLogRepository;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+public class AuditLogServiceMetricsIntegrationTest extends IntegrationTest {
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @MockBean
+    private TransactionIdProvider transactionIdProvider;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private AuditLogRepository repository;
+
+    @Autowired
+    private AuditLogService service;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        when(transactionIdProvider.currentTransactionId())
+                .thenReturn(UUID.fromString("3a37e67d-a8b2-4c35-9e6f-a4e4b686ffb5"));
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void metrics() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> {
+            service.log(entity, CrudAction.CREATE);
+            service.log(entity, CrudAction.CREATE);
+        });
+        transactionalService.inTransaction(() -> {
+            service.log(entity, CrudAction.UPDATE);
+            service.log(entity, CrudAction.PATCH);
+        });
+
+        check(meterRegistry.get("plusminus.audit.log")
+                .tag("entityType", TestEntity.class.getName())
+                .tag("action", "UPDATE")
+                .timer().count()).is(1L);
+        check(meterRegistry.get("plusminus.audit.log")
+                .tag("action", "CREATE")
+                .timer().count()).is(1L);
+        check(meterRegistry.find("plusminus.audit.log")
+                .tag("action", "PATCH")
+                .timer()).isNull();
+        check(meterRegistry.get("plusminus.audit.coalesced")
+                .tag("present", "CREATE")
+                .tag("action", "CREATE")
+                .counter().count()).is(1.0);
+        check(meterRegistry.get("plusminus.audit.coalesced")
+                .tag("present", "UPDATE")
+                .tag("action", "PATCH")
+                .counter().count()).is(1.0);
+        check(meterRegistry.get("plusminus.audit.transaction.logs").summary().count()).is(2L);
+        check(meterRegistry.get("plusminus.audit.unmarked.rows").summary().totalAmount()).is(1.0);
+    }
+
+    @Test
+    public void repositoryPageQueriesAreTimed() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        String query = "findByEntityTypeInAndNumberGreaterThanAndCurrentTrue";
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> repository.findByEntityTypeInAndNumberGreaterThanAndCurrentTrue(
+                Collections.singletonList(TestEntity.class.getName()), 0L, PageRequest.of(0, 10)));
+
+        check(meterRegistry.get("plusminus.audit.feed").tag("query", query).timer().count()).is(1L);
+        check(meterRegistry.get("plusminus.audit.feed.rows").tag("query", query).summary().totalAmount())
+                .is(1.0);
+        check(meterRegistry.find("plusminus.audit.feed")
+                .tag("query", "findByEntityTypeAndEntityIdAndCurrentTrue")
+                .timer()).isNull();
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = "plusminus.audit.write-mode=write-behind")
+public class AuditLogServiceWriteBehindIntegrationTest extends IntegrationTest {
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @MockBean
+    private TransactionIdProvider transactionIdProvider;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AuditLogService service;
+
+    private UUID transactionId = UUID.fromString("3a37e67d-a8b2-4c35-9e6f-a4e4b686ffb5");
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        when(transactionIdProvider.currentTransactionId()).thenReturn(transactionId);
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void create() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        AuditLog<?> auditLog = entityManager.find(AuditLog.class, 1L);
+        AuditLog<?> auditLogNull = entityManager.find(AuditLog.class, 2L);
+
+        check(auditLog.isCurrent()).is(true);
+        check(auditLog.getAction()).is(CrudAction.CREATE);
+        check(auditLog.getDevice()).is("TestDevice");
+        check(auditLog.getUsername()).is("TestUser");
+        check(auditLog.getTenant()).is("Some tenant");
+        check(auditLog.getTransactionId()).is(transactionId);
+        check(auditLogNull).isNull();
+    }
+
+    @Test
+    public void numberIsAssignedOnCommit() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        AuditLog<?> created = transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        AuditLog<?> updated = transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+
+        check(created.getNumber()).is(1L);
+        check(updated.getNumber()).is(2L);
+    }
+
+    @Test
+    public void previousAuditLog() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.UPDATE));
+        AuditLog<?> auditLogFirst = entityManager.find(AuditLog.class, 1L);
+        AuditLog<?> auditLogSecond = entityManager.find(AuditLog.class, 2L);
+
+        check(auditLogFirst.isCurrent()).is(false);
+        check(auditLogFirst.getAction()).is(CrudAction.CREATE);
+        check(auditLogSecond.isCurrent()).is(true);
+        check(auditLogSecond.getAction()).is(CrudAction.UPDATE);
+    }
+
+    @Test
+    public void createAndDeleteInTheSameTransaction() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> {
+            service.log(entity, CrudAction.CREATE);
+            service.log(entity, CrudAction.DELETE);
+        });
+
+        check(entityManager.find(AuditLog.class, 1L)).isNull();
+    }
+
+    @Test
+    public void deleteAndUpdateInTheSameTransaction() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        transactionalService.inTransaction(() -> {
+            service.log(entity, CrudAction.DELETE);
+            service.log(entity, CrudAction.UPDATE);
+        });
+        AuditLog<?> auditLog = entityManager.find(AuditLog.class, 1L);
+
+        check(auditLog.getAction()).is(CrudAction.UPDATE);
+        check(entityManager.find(AuditLog.class, 2L)).isNull();
+    }
+
+    @Test
+    public void createWithGeneratedIdAndUpdate() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        entity.setId(null);
+
+        transactionalService.inTransaction(() -> {
+            service.log(entity, CrudAction.CREATE);
+            entityManager.persist(entity);
+            service.log(entity, CrudAction.UPDATE);
+        });
+        AuditLog<?> auditLog = entityManager.find(AuditLog.class, 1L);
+
+        check(auditLog.getAction()).is(CrudAction.CREATE);
+        check(auditLog.getEntityId()).is(entity.getId());
+        check(auditLog.isCurrent()).is(true);
+        check(entityManager.find(AuditLog.class, 2L)).isNull();
+    }
+
+    @Test
+    public void createWithGeneratedIdAndDelete() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        entity.setId(null);
+
+        transactionalService.inTransaction(() -> {
+            service.log(entity, CrudAction.CREATE);
+            entityManager.persist(entity);
+            service.log(entity, CrudAction.DELETE);
+        });
+
+        check(entityManager.find(AuditLog.class, 1L)).isNull();
+    }
+
+    @Test
+    public void createTwoEntitiesWithoutIds() {
+        TestEntity first = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        TestEntity second = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        first.setId(null);
+        second.setId(null);
+
+        List<AuditLog<?>> auditLogs = transactionalService.inTransaction(() -> {
+            service.log(first, CrudAction.CREATE);
+            service.log(second, CrudAction.CREATE);
+            entityManager.persist(first);
+            entityManager.persist(second);
+            return service.logAll(Arrays.asList(first, second), CrudAction.UPDATE);
+        });
+
+        check(auditLogs).hasSize(2);
+        check(auditLogs.get(0).getAction()).is(CrudAction.CREATE);
+        check(auditLogs.get(0).getEntityId()).is(first.getId());
+        check(auditLogs.get(1).getAction()).is(CrudAction.CREATE);
+        check(auditLogs.get(1).getEntityId()).is(second.getId());
+        check(entityManager.find(AuditLog.class, 3L)).isNull();
+    }
+}
@@ -0,0 +1,58 @@
+package software.plusminus.audit.service;
+
+import org.hibernate.Hibernate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.context.Context;
+import software.plusminus.test.IntegrationTest;
+
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+public class AuditMetadataRegistryIntegrationTest extends IntegrationTest {
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AuditMetadataRegistry registry;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void readsHibernateProxy() {
+        TestEntity entity = new TestEntity();
+        entity.setTenant("Some tenant");
+        transactionalService.inTransaction(() -> entityManager.persist(entity));
+
+        transactionalService.inTransaction(() -> {
+            TestEntity proxy = entityManager.getReference(TestEntity.class, entity.getId());
+            AuditMetadata metadata = registry.get(proxy);
+
+            check(metadata == registry.get(TestEntity.class)).is(true);
+            check(metadata.readId(proxy)).is(entity.getId());
+            check(Hibernate.isInitialized(proxy)).is(false);
+            check(metadata.readTenant(proxy)).is("Some tenant");
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package software.plusminus.audit.service;
+
+import org.junit.Test;
+import software.plusminus.audit.annotation.Auditable;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.fixtures.Tenant;
+
+import javax.persistence.Id;
+
+import static software.plusminus.check.Checks.check;
+
+public class AuditMetadataTest {
+
+    private AuditMetadataRegistry registry = new AuditMetadataRegistry();
+
+    @Test
+    public void readsIdAndTenantDeclaredOnSuperclass() {
+        ChildEntity entity = new ChildEntity();
+        entity.id = 5L;
+        entity.tenant = "Some tenant";
+
+        AuditMetadata metadata = registry.get(entity);
+
+        check(metadata.isAuditable()).is(true);
+        check(metadata.readId(entity)).is(5L);
+        check(metadata.readTenant(entity)).is("Some tenant");
+    }
+
+    @Test
+    public void readsNullTenantWithoutTenantField() {
+        IntegerIdEntity entity = new IntegerIdEntity();
+
+        check(registry.get(entity).readTenant(entity)).isNull();
+        check(registry.get(entity).isAuditable()).is(false);
+    }
+
+    @Test
+    public void readsNumericIdAsLong() {
+        IntegerIdEntity entity = new IntegerIdEntity();
+        entity.id = 7;
+
+        check(registry.get(entity).readId(entity)).is(7L);
+    }
+
+    @Test
+    public void readsNullId() {
+        check(registry.get(ChildEntity.class).readId(new ChildEntity())).isNull();
+    }
+
+    @Test(expected = AuditException.class)
+    public void rejectsNonNumericId() {
+        StringIdEntity entity = new StringIdEntity();
+        entity.id = "id";
+
+        registry.get(entity).readId(entity);
+    }
+
+    @Test
+    public void cachesMetadataPerClass() {
+        check(registry.get(ChildEntity.class) == registry.get(new ChildEntity())).is(true);
+    }
+
+    @Test
+    public void skipsExcludedChangeFields() {
+        check(registry.get(SecretEntity.class).getChangeFields()).hasSize(1);
+        check(registry.get(SecretEntity.class).getChangeFields().contains("myField")).is(true);
+    }
+
+    private static class BaseEntity {
+        @Id
+        private Long id;
+        @Tenant
+        private String tenant;
+    }
+
+    @Auditable
+    private static class ChildEntity extends BaseEntity {
+        private String myField;
+    }
+
+    private static class IntegerIdEntity {
+        @Id
+        private Integer id;
+    }
+
+    private static class StringIdEntity {
+        @Id
+        private String id;
+    }
+
+    @Auditable(changes = true, excludedFields = {"password", "token"})
+    private static class SecretEntity {
+        @Id
+        private Long id;
+        private String myField;
+        private String password;
+        private String token;
+    }
+}
@@ -0,0 +1,68 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import javax.persistence.EntityManager;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+public class AuditPrincipalIntegrationTest extends IntegrationTest {
+
+    @MockBean
+    private AuditPrincipalProvider principalProvider;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AuditLogService service;
+
+    @Before
+    public void before() {
+        when(principalProvider.currentPrincipal())
+                .thenReturn(AuditPrincipal.of("BatchJob", null, "Job tenant"));
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void principalIsCapturedOncePerTransaction() {
+        TestEntity first = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        TestEntity second = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        second.setId(2L);
+        second.setTenant(null);
+
+        transactionalService.inTransaction(() -> {
+            service.log(first, CrudAction.UPDATE);
+            service.log(second, CrudAction.UPDATE);
+        });
+        AuditLog<?> auditLogFirst = entityManager.find(AuditLog.class, 1L);
+        AuditLog<?> auditLogSecond = entityManager.find(AuditLog.class, 2L);
+
+        verify(principalProvider, times(1)).currentPrincipal();
+        check(auditLogFirst.getUsername()).is("BatchJob");
+        check(auditLogFirst.getDevice()).is("");
+        check(auditLogFirst.getTenant()).is("Some tenant");
+        check(auditLogSecond.getUsername()).is("BatchJob");
+        check(auditLogSecond.getTenant()).is("Job tenant");
+    }
+}
@@ -0,0 +1,66 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import javax.persistence.EntityManager;
+
+import static software.plusminus.check.Checks.check;
+
+public class AuditPrincipalProviderIntegrationTest extends IntegrationTest {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private AuditLogService service;
+
+    @Before
+    public void before() {
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void applicationProviderReplacesDefaultOne() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        entity.setTenant(null);
+
+        transactionalService.inTransaction(() -> service.log(entity, CrudAction.CREATE));
+        AuditLog<?> auditLog = entityManager.find(AuditLog.class, 1L);
+
+        check(applicationContext.getBeansOfType(AuditPrincipalProvider.class).keySet()).is("jobPrincipalProvider");
+        check(auditLog.getUsername()).is("Job");
+        check(auditLog.getDevice()).is("Scheduler");
+        check(auditLog.getTenant()).is("Job tenant");
+    }
+
+    @TestConfiguration
+    static class PrincipalConfig {
+
+        @Bean
+        AuditPrincipalProvider jobPrincipalProvider() {
+            return () -> AuditPrincipal.of("Job", "Scheduler", "Job tenant");
+        }
+    }
+}
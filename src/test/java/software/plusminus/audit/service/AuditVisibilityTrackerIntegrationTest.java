@@ -0,0 +1,112 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = {
+        "plusminus.audit.visibility-watermark=true",
+        "plusminus.audit.visibility-refresh-interval=PT0.1S"
+})
+public class AuditVisibilityTrackerIntegrationTest extends IntegrationTest {
+
+    private static final List<String> TYPES = Collections.singletonList(TestEntity.class.getName());
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService auditLogService;
+    @Autowired
+    private AuditFeedService feedService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuditVisibilityTracker tracker;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void openTokenHoldsWatermark() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        long initial = tracker.safeWatermark();
+        AuditVisibilityTracker.Token token = tracker.open();
+
+        AuditLog<?> committed = transactionalService.inTransaction(
+                () -> auditLogService.log(entity, CrudAction.CREATE));
+
+        check(tracker.safeWatermark()).is(initial);
+        tracker.close(token);
+        check(tracker.safeWatermark()).is(committed.getNumber());
+    }
+
+    @Test
+    public void laterCommittedNumberIsHiddenUntilEarlierCommits() {
+        TestEntity first = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        TestEntity second = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        second.setId(2L);
+        AtomicReference<Slice<AuditLog<?>>> whileInFlight = new AtomicReference<>();
+
+        AuditLog<?> earlier = transactionalService.inTransaction(() -> {
+            AuditLog<?> auditLog = auditLogService.log(first, CrudAction.CREATE);
+            transactionalService.inNewTransaction(() -> auditLogService.log(second, CrudAction.CREATE));
+            transactionalService.inNewTransaction(
+                    () -> whileInFlight.set(feedService.findChanges(TYPES, null, 0, 10)));
+            return auditLog;
+        });
+
+        check(whileInFlight.get().getContent()).isEmpty();
+        Slice<AuditLog<?>> afterCommit = feedService.findChanges(TYPES, null, 0, 10);
+        check(afterCommit.getContent()).hasSize(2);
+        check(afterCommit.getContent().get(0).getNumber()).is(earlier.getNumber());
+    }
+
+    @Test
+    public void numbersCommittedBypassingTrackerAreSeenAfterRefresh() throws InterruptedException {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        AuditLog<?> tracked = transactionalService.inTransaction(
+                () -> auditLogService.log(entity, CrudAction.CREATE));
+        check(tracker.safeWatermark()).is(tracked.getNumber());
+
+        jdbcTemplate.update("insert into audit_log (tenant, entity_type, entity_id, time, username, device,"
+                        + " action, current) values (?, ?, ?, ?, ?, ?, ?, ?)",
+                "Some tenant", TestEntity.class.getName(), 2L, Timestamp.from(Instant.now()), "OtherInstance",
+                "OtherDevice", CrudAction.CREATE.name(), true);
+        Thread.sleep(200);
+
+        check(tracker.safeWatermark()).is(tracked.getNumber() + 1);
+        check(feedService.findChanges(TYPES, null, tracked.getNumber(), 10).getContent()).hasSize(1);
+    }
+}
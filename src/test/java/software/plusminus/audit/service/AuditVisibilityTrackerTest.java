@@ -0,0 +1,32 @@
+package software.plusminus.audit.service;
+
+import org.junit.Test;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.config.AuditRoutingMode;
+import software.plusminus.audit.exception.AuditException;
+import software.plusminus.audit.repository.AuditLogRepository;
+
+import static org.mockito.Mockito.mock;
+import static software.plusminus.check.Checks.check;
+
+public class AuditVisibilityTrackerTest {
+
+    @Test(expected = AuditException.class)
+    public void visibilityWatermarkIsRejectedWithRouting() {
+        AuditProperties properties = new AuditProperties();
+        properties.setVisibilityWatermark(true);
+        properties.getRouting().setMode(AuditRoutingMode.TABLE);
+
+        new AuditVisibilityTracker(mock(AuditLogRepository.class), properties);
+    }
+
+    @Test
+    public void disabledTrackerIsAllowedWithRouting() {
+        AuditProperties properties = new AuditProperties();
+        properties.getRouting().setMode(AuditRoutingMode.TABLE);
+
+        AuditVisibilityTracker tracker = new AuditVisibilityTracker(mock(AuditLogRepository.class), properties);
+
+        check(tracker.safeWatermark()).is(Long.MAX_VALUE);
+    }
+}
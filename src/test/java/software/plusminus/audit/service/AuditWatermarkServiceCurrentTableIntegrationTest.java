@@ -0,0 +1,82 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+/**
+ * The current flag of audit_log is never set with the current table, so watermarks are loaded from it.
+ */
+@TestPropertySource(properties = {
+        "plusminus.audit.current-table=true",
+        "plusminus.audit.watermark-ttl=PT0.1S"
+})
+public class AuditWatermarkServiceCurrentTableIntegrationTest extends IntegrationTest {
+
+    private static final String TENANT = "Some tenant";
+    private static final String TYPE = TestEntity.class.getName();
+    private static final List<String> TYPES = Collections.singletonList(TYPE);
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService auditLogService;
+
+    @Autowired
+    private AuditWatermarkService service;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void hasChangesAfterWriteAndAfterTtl() throws InterruptedException {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        check(service.hasChanges(TENANT, TYPES, 0)).is(false);
+
+        AuditLog<?> created = transactionalService.inTransaction(
+                () -> auditLogService.log(entity, CrudAction.CREATE));
+        check(service.hasChanges(TENANT, TYPES, 0)).is(true);
+        Thread.sleep(200);
+
+        check(service.hasChanges(TENANT, TYPES, 0)).is(true);
+        check(service.watermark(TENANT, TYPE)).is(created.getNumber());
+        check(service.hasChanges(TENANT, TYPES, created.getNumber())).is(false);
+    }
+
+    @Test
+    public void watermarkIsLoadedFromCurrentTable() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        transactionalService.inTransaction(() -> auditLogService.log(entity, CrudAction.CREATE));
+        AuditLog<?> updated = transactionalService.inTransaction(
+                () -> auditLogService.log(entity, CrudAction.UPDATE));
+
+        check(service.watermark(TENANT, TYPE)).is(updated.getNumber());
+        check(service.watermark("Other tenant", TYPE)).is(0L);
+    }
+}
@@ -0,0 +1,69 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+public class AuditWatermarkServiceIntegrationTest extends IntegrationTest {
+
+    private static final String TENANT = "Some tenant";
+    private static final List<String> TYPES = Collections.singletonList(TestEntity.class.getName());
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService auditLogService;
+
+    @Autowired
+    private AuditWatermarkService service;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void emptyFeed() {
+        check(service.watermark(TENANT, TestEntity.class.getName())).is(0L);
+        check(service.hasChanges(TENANT, TYPES, 0)).is(false);
+    }
+
+    @Test
+    public void raisedAfterCommit() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        check(service.watermark(TENANT, TestEntity.class.getName())).is(0L);
+
+        AuditLog<?> created = transactionalService.inTransaction(
+                () -> auditLogService.log(entity, CrudAction.CREATE));
+        AuditLog<?> updated = transactionalService.inTransaction(
+                () -> auditLogService.log(entity, CrudAction.UPDATE));
+
+        check(service.watermark(TENANT, TestEntity.class.getName())).is(updated.getNumber());
+        check(service.hasChanges(TENANT, TYPES, created.getNumber())).is(true);
+        check(service.hasChanges(TENANT, TYPES, updated.getNumber())).is(false);
+        check(service.hasChanges("Other tenant", TYPES, 0)).is(false);
+    }
+}
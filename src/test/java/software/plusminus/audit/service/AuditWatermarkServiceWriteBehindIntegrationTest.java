@@ -0,0 +1,86 @@
+package software.plusminus.audit.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+/**
+ * AuditLogs are numbered when they are written before commit, so a watermark loaded inside the transaction
+ * doesn't see them and is raised by the commit.
+ */
+@TestPropertySource(properties = "plusminus.audit.write-mode=write-behind")
+public class AuditWatermarkServiceWriteBehindIntegrationTest extends IntegrationTest {
+
+    private static final String TENANT = "Some tenant";
+    private static final String TYPE = TestEntity.class.getName();
+    private static final List<String> TYPES = Collections.singletonList(TYPE);
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService auditLogService;
+
+    @Autowired
+    private AuditWatermarkService service;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void watermarkLoadedBeforeNumbersAreAssignedIsRaisedOnCommit() {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+
+        AuditLog<?> created = transactionalService.inTransaction(() -> {
+            AuditLog<?> auditLog = auditLogService.log(entity, CrudAction.CREATE);
+            check(auditLog.getNumber()).isNull();
+            check(service.watermark(TENANT, TYPE)).is(0L);
+            return auditLog;
+        });
+
+        check(created.getNumber()).isNotNull();
+        check(service.watermark(TENANT, TYPE)).is(created.getNumber());
+        check(service.hasChanges(TENANT, TYPES, 0)).is(true);
+    }
+
+    @Test
+    public void batchRaisesWatermarkToItsHighestNumber() {
+        TestEntity first = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        TestEntity second = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        second.setId(2L);
+        check(service.watermark(TENANT, TYPE)).is(0L);
+
+        List<AuditLog<?>> auditLogs = transactionalService.inTransaction(
+                () -> auditLogService.logAll(Arrays.asList(first, second), CrudAction.CREATE));
+
+        check(service.watermark(TENANT, TYPE)).is(auditLogs.get(1).getNumber());
+        check(service.hasChanges(TENANT, TYPES, auditLogs.get(0).getNumber())).is(true);
+        check(service.hasChanges(TENANT, TYPES, auditLogs.get(1).getNumber())).is(false);
+    }
+}
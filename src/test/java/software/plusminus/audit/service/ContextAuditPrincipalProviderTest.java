@@ -0,0 +1,37 @@
+package software.plusminus.audit.service;
+
+import org.junit.Test;
+import software.plusminus.context.Context;
+import software.plusminus.security.Security;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static software.plusminus.check.Checks.check;
+
+public class ContextAuditPrincipalProviderTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void tenantIsResolvedOnceWhenNeeded() {
+        Context<Security> securityContext = mock(Context.class);
+        Context<String> tenantContext = mock(Context.class);
+        DeviceContext deviceContext = mock(DeviceContext.class);
+        Security security = mock(Security.class);
+        when(securityContext.get()).thenReturn(security);
+        when(security.getUsername()).thenReturn("TestUser");
+        when(tenantContext.get()).thenReturn("Some tenant");
+        ContextAuditPrincipalProvider provider =
+                new ContextAuditPrincipalProvider(securityContext, deviceContext, tenantContext);
+
+        AuditPrincipal principal = provider.currentPrincipal();
+        verify(tenantContext, never()).get();
+
+        check(principal.getUsername()).is("TestUser");
+        check(principal.getTenant()).is("Some tenant");
+        check(principal.getTenant()).is("Some tenant");
+        verify(tenantContext, times(1)).get();
+    }
+}
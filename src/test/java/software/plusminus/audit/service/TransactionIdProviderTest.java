@@ -7,6 +7,7 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
@@ -55,4 +56,40 @@ public class TransactionIdProviderTest {
         UUID actual = transactionIdProvider.currentTransactionId();
         check(actual).isNull();
     }
+
+    @Test
+    public void uppercaseTransactionId() {
+        when(request.getParameter("transaction")).thenReturn(transactionId.toUpperCase());
+        UUID actual = transactionIdProvider.currentTransactionId();
+        check(actual).is(transactionId);
+    }
+
+    @Test
+    public void misplacedDash() {
+        when(request.getParameter("transaction")).thenReturn("3a37e67da-8b2-4c35-9e6f-a4e4b686ffb5");
+        UUID actual = transactionIdProvider.currentTransactionId();
+        check(actual).isNull();
+    }
+
+    @Test
+    public void nonHexDigit() {
+        when(request.getParameter("transaction")).thenReturn("3a37e67d-a8b2-4c35-9e6f-a4e4b686ffbg");
+        UUID actual = transactionIdProvider.currentTransactionId();
+        check(actual).isNull();
+    }
+
+    @Test
+    public void memoizedPerRequest() {
+        MockHttpServletRequest mockRequest = new MockHttpServletRequest();
+        mockRequest.setParameter("transaction", transactionId);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(mockRequest));
+        TransactionIdProvider provider = new TransactionIdProvider(mockRequest);
+
+        UUID first = provider.currentTransactionId();
+        mockRequest.setParameter("transaction", "ddc2a9a5-5a7f-4d53-b0c5-0c2bd7a14e51");
+        UUID second = provider.currentTransactionId();
+
+        check(first).is(transactionId);
+        check(second).is(transactionId);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package software.plusminus.audit.sse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.lang.Nullable;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import software.plusminus.audit.config.AuditProperties;
+import software.plusminus.audit.event.AuditLogsCommittedEvent;
+import software.plusminus.audit.fixtures.TestEntity;
+import software.plusminus.audit.fixtures.TransactionalService;
+import software.plusminus.audit.model.AuditLog;
+import software.plusminus.audit.service.AuditLogService;
+import software.plusminus.audit.service.DeviceContext;
+import software.plusminus.check.util.JsonUtils;
+import software.plusminus.context.Context;
+import software.plusminus.crud.CrudAction;
+import software.plusminus.test.IntegrationTest;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static software.plusminus.check.Checks.check;
+
+@TestPropertySource(properties = {
+        "plusminus.audit.write-mode=write-behind",
+        "plusminus.audit.sse.enabled=true"
+})
+public class AuditChangeBroadcasterIntegrationTest extends IntegrationTest {
+
+    private static final String TENANT = "Some tenant";
+    private static final String TYPE = TestEntity.class.getName();
+
+    @MockBean
+    private DeviceContext deviceContext;
+    @Autowired
+    private TransactionalService transactionalService;
+    @Autowired
+    private AuditLogService auditLogService;
+
+    @Autowired
+    private AuditChangeBroadcaster broadcaster;
+
+    @Before
+    public void before() {
+        when(deviceContext.currentDevice()).thenReturn("TestDevice");
+        Context.init();
+    }
+
+    @After
+    public void after() {
+        Context.clear();
+    }
+
+    @Test
+    public void notifiesAfterCommitWithNumber() throws Exception {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        MvcResult result = subscribe(broadcaster, TENANT, null);
+
+        transactionalService.inTransaction(() -> auditLogService.log(entity, CrudAction.CREATE));
+
+        await(result, "event:changes");
+        check(content(result).contains("\"entityType\":\"" + TYPE + "\"")).is(true);
+        check(content(result).contains("\"entityId\":1")).is(true);
+        check(content(result).contains("\"action\":\"CREATE\"")).is(true);
+        check(content(result).contains("\"number\":1")).is(true);
+    }
+
+    @Test
+    public void skipsOtherTenantsAndOwnDevice() throws Exception {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        MvcResult otherTenant = subscribe(broadcaster, "Other tenant", null);
+        MvcResult ownDevice = subscribe(broadcaster, TENANT, "TestDevice");
+        MvcResult otherDevice = subscribe(broadcaster, TENANT, "OtherDevice");
+
+        transactionalService.inTransaction(() -> auditLogService.log(entity, CrudAction.CREATE));
+
+        await(otherDevice, "event:changes");
+        check(content(otherTenant)).is("");
+        check(content(ownDevice)).is("");
+    }
+
+    @Test
+    public void nothingIsNotifiedOnRollback() throws Exception {
+        TestEntity entity = JsonUtils.fromJson("/json/test-entity.json", TestEntity.class);
+        MvcResult result = subscribe(broadcaster, TENANT, null);
+
+        try {
+            transactionalService.inTransaction((Runnable) () -> {
+                auditLogService.log(entity, CrudAction.CREATE);
+                throw new IllegalStateException("rollback");
+            });
+        } catch (IllegalStateException expected) {
+            // rolled back
+        }
+
+        Thread.sleep(200);
+        check(content(result)).is("");
+    }
+
+    @Test
+    public void disconnectsOnlySlowSubscriberWhenItsQueueIsFull() throws Exception {
+        AuditProperties properties = new AuditProperties();
+        properties.getSse().setQueueCapacity(1);
+        AuditChangeBroadcaster smallBroadcaster = new AuditChangeBroadcaster(properties);
+        try {
+            SseEmitter slow = smallBroadcaster.subscribe(TENANT, Collections.singletonList(TYPE), null);
+            MvcResult fast = subscribe(smallBroadcaster, TENANT, null);
+
+            // SseEmitter sends under its own lock, so the drainer of the slow subscriber waits here
+            synchronized (slow) {
+                for (int i = 0; i < 3; i++) {
+                    smallBroadcaster.onCommitted(event(i + 1L));
+                }
+                await(fast, "\"number\":3");
+            }
+
+            check(isCompleted(slow)).is(true);
+            check(content(fast).contains("\"number\":1")).is(true);
+            check(content(fast).contains("\"number\":2")).is(true);
+        } finally {
+            smallBroadcaster.stop();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MvcResult subscribe(AuditChangeBroadcaster broadcaster, String tenant, @Nullable String device)
+            throws Exception {
+        Context<String> tenantContext = mock(Context.class);
+        when(tenantContext.get()).thenReturn(tenant);
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(new AuditChangeController(broadcaster, tenantContext))
+                .build();
+        MockHttpServletRequestBuilder request = get("/audit/changes").param("types", TYPE);
+        if (device != null) {
+            request.param("device", device);
+        }
+        return mockMvc.perform(request).andReturn();
+    }
+
+    private static AuditLogsCommittedEvent event(long number) {
+        AuditLog<Object> auditLog = new AuditLog<>();
+        auditLog.setNumber(number);
+        auditLog.setTenant(TENANT);
+        auditLog.setEntityType(TYPE);
+        auditLog.setEntityId(number);
+        auditLog.setAction(CrudAction.CREATE);
+        List<AuditLog<?>> auditLogs = Collections.singletonList(auditLog);
+        return new AuditLogsCommittedEvent(auditLogs);
+    }
+
+    private static String content(MvcResult result) throws UnsupportedEncodingException {
+        return result.getResponse().getContentAsString();
+    }
+
+    private static boolean isCompleted(SseEmitter emitter) throws Exception {
+        for (int i = 0; i < 250; i++) {
+            try {
+                emitter.send("ping");
+            } catch (IllegalStateException e) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    private static void await(MvcResult result, String expected) throws Exception {
+        for (int i = 0; i < 250 && !content(result).contains(expected); i++) {
+            Thread.sleep(20);
+        }
+        check(content(result).contains(expected)).is(true);
+    }
+}